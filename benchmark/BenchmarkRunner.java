@@ -0,0 +1,36 @@
+package group26.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the planning benchmarks and writes the results as JSON so runs can be compared for regressions
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public final class BenchmarkRunner {
+	//The file the results are written to if none is given
+	private static final String DEFAULTRESULTFILE = "planning-benchmark.json";
+	
+	private BenchmarkRunner(){
+	}
+	
+	/**
+	 * Runs the benchmarks
+	 * @param args The file to write the results to and optionally a pattern selecting the benchmarks to run
+	 * @throws RunnerException If the benchmarks could not be run
+	 */
+	public static void main(String[] args) throws RunnerException{
+		String resultFile = args.length > 0 ? args[0] : DEFAULTRESULTFILE;
+		String include = args.length > 1 ? args[1] : "group26\\.benchmark\\..*";
+		Options options = new OptionsBuilder()
+				.include(include)
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile)
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,135 @@
+package group26.benchmark;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Random;
+
+import com.unimelb.swen30006.partc.core.World;
+import com.unimelb.swen30006.partc.roads.Intersection;
+import com.unimelb.swen30006.partc.roads.Intersection.Direction;
+import com.unimelb.swen30006.partc.roads.Road;
+
+/**
+ * Generates synthetic worlds of north-south and east-west roads for benchmarking the planning subsystem
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public final class MapGenerator {
+	//The width and length of every intersection
+	private static final float INTERSECTIONSIZE = 20;
+	//The distance between intersections on a grid map
+	private static final double BLOCKSIZE = 100;
+	//The shortest and longest distance between intersections on an irregular map
+	private static final double MINBLOCKSIZE = 60, MAXBLOCKSIZE = 200;
+	//The chance of each road being left out of an irregular map
+	private static final double MISSINGROADCHANCE = 0.2;
+	//The length of the dead end roads leaving the edge of an irregular map
+	private static final double DEADENDLENGTH = 80;
+	
+	//The kinds of map that can be generated
+	public enum MapType {
+		Grid, Irregular
+	}
+	
+	private MapGenerator(){
+	}
+	
+	/**
+	 * Generates a world with roughly the given number of intersections
+	 * @param mapType The kind of map to generate
+	 * @param intersectionCount The number of intersections wanted, rounded up to a square
+	 * @param seed The seed for the random layout of irregular maps
+	 * @return The generated world
+	 */
+	public static World generate(MapType mapType, int intersectionCount, long seed){
+		if(mapType == MapType.Grid){
+			return grid(intersectionCount);
+		}return irregular(intersectionCount, seed);
+	}
+	
+	/**
+	 * Generates a Manhattan grid where every neighbouring pair of intersections is joined by a road
+	 * @param intersectionCount The number of intersections wanted, rounded up to a square
+	 * @return The generated world
+	 */
+	public static World grid(int intersectionCount){
+		int side = sideLength(intersectionCount);
+		double[] positions = new double[side];
+		for(int i=0;i<side;i++){
+			positions[i] = i*BLOCKSIZE;
+		}return build(positions, positions, 0, false, new Random(0));
+	}
+	
+	/**
+	 * Generates a grid with uneven block sizes, missing roads and dead ends on its western edge
+	 * @param intersectionCount The number of intersections wanted, rounded up to a square
+	 * @param seed The seed for the random layout
+	 * @return The generated world
+	 */
+	public static World irregular(int intersectionCount, long seed){
+		Random random = new Random(seed);
+		int side = sideLength(intersectionCount);
+		double[] columns = new double[side];
+		double[] rows = new double[side];
+		for(int i=1;i<side;i++){
+			columns[i] = columns[i-1] + MINBLOCKSIZE + (random.nextDouble()*(MAXBLOCKSIZE-MINBLOCKSIZE));
+			rows[i] = rows[i-1] + MINBLOCKSIZE + (random.nextDouble()*(MAXBLOCKSIZE-MINBLOCKSIZE));
+		}return build(columns, rows, MISSINGROADCHANCE, true, random);
+	}
+	
+	/**
+	 * Builds the world from the positions of each column and row of intersections
+	 * @param columns The x position of each column
+	 * @param rows The y position of each row
+	 * @param missingRoadChance The chance of each road being left out
+	 * @param deadEnds Whether to add dead end roads leaving the western edge
+	 * @param random The source of randomness for missing roads
+	 * @return The generated world
+	 */
+	private static World build(double[] columns, double[] rows, double missingRoadChance, boolean deadEnds, Random random){
+		Intersection[][] grid = new Intersection[columns.length][rows.length];
+		Intersection[] intersections = new Intersection[columns.length*rows.length];
+		ArrayList<Road> roads = new ArrayList<Road>();
+		double offset = INTERSECTIONSIZE/2;
+		Road road;
+		
+		for(int column=0;column<columns.length;column++){
+			for(int row=0;row<rows.length;row++){
+				grid[column][row] = new Intersection(new Point2D.Double(columns[column], rows[row]), INTERSECTIONSIZE, INTERSECTIONSIZE);
+				intersections[(column*rows.length)+row] = grid[column][row];
+			}
+		}
+		for(int column=0;column<columns.length;column++){
+			for(int row=0;row<rows.length;row++){
+				//Join each intersection to its eastern and northern neighbours
+				if(column+1 < columns.length && random.nextDouble() >= missingRoadChance){
+					road = new Road(new Point2D.Double(columns[column]+offset, rows[row]), new Point2D.Double(columns[column+1]-offset, rows[row]));
+					grid[column][row].roads.put(Direction.East, road);
+					grid[column+1][row].roads.put(Direction.West, road);
+					roads.add(road);
+				}if(row+1 < rows.length && random.nextDouble() >= missingRoadChance){
+					road = new Road(new Point2D.Double(columns[column], rows[row]+offset), new Point2D.Double(columns[column], rows[row+1]-offset));
+					grid[column][row].roads.put(Direction.North, road);
+					grid[column][row+1].roads.put(Direction.South, road);
+					roads.add(road);
+				}
+			}
+		}
+		if(deadEnds){
+			for(int row=0;row<rows.length;row++){
+				road = new Road(new Point2D.Double(columns[0]-offset, rows[row]), new Point2D.Double(columns[0]-offset-DEADENDLENGTH, rows[row]));
+				grid[0][row].roads.put(Direction.West, road);
+				roads.add(road);
+			}
+		}return new World(intersections, roads.toArray(new Road[roads.size()]));
+	}
+	
+	/**
+	 * Returns the number of intersections along each side of a square map
+	 * @param intersectionCount The number of intersections wanted
+	 * @return The side length that gives at least that many intersections
+	 */
+	private static int sideLength(int intersectionCount){
+		return Math.max(2, (int)Math.ceil(Math.sqrt(intersectionCount)));
+	}
+}
@@ -0,0 +1,213 @@
+package group26.benchmark;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.unimelb.swen30006.partc.core.World;
+import com.unimelb.swen30006.partc.roads.Road;
+
+import group26.planning.ContractionHierarchy;
+import group26.planning.DistanceMatrix;
+import group26.planning.DistanceTable;
+import group26.planning.Graph;
+import group26.planning.GraphSnapshot;
+import group26.planning.PlannedPath;
+import group26.planning.Route;
+
+/**
+ * Benchmarks the hot paths of the planning subsystem on synthetic maps
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanningBenchmark {
+	//The number of distinct queries cycled through, larger than the route cache so every plan is a real search
+	private static final int QUERYCOUNT = 4096;
+	//The number of distinct queries used when measuring planning with the route cache warm
+	private static final int CACHEDQUERYCOUNT = 64;
+	//The number of cars and jobs in the distance table benchmark
+	private static final int TABLESOURCES = 16;
+	private static final int TABLEDESTINATIONS = 64;
+	
+	@Param({"100", "1000", "10000", "100000"})
+	public int intersectionCount;
+	
+	@Param({"Grid", "Irregular"})
+	public MapGenerator.MapType mapType;
+	
+	//The generated world and the graph built from it
+	private World world;
+	private Graph graph;
+	//A graph of the same world with its adjacency stored off the heap
+	private Graph offHeapGraph;
+	//The starting road and destination of each query
+	private Road[] startingRoads;
+	private Point2D.Double[] destinations;
+	//The query to run next
+	private int nextQuery;
+	//A route part of the way through its journey, used for measuring the distance to the destination
+	private Route route;
+	//Calculates the distances from the cars to the jobs in the distance table benchmark
+	private DistanceTable distanceTable;
+	private Road[] tableRoads;
+	private Point2D.Double[] tablePositions;
+	private Point2D.Double[] tableDestinations;
+	//A snapshot of the graph for measuring loading the graph instead of building it
+	private File snapshotFile;
+	
+	/**
+	 * Generates the map, builds the graph and picks random queries between roads
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		Random random = new Random(42);
+		Road[] roads;
+		Road destinationRoad;
+		PlannedPath longestRoute = null;
+		PlannedPath plannedRoute;
+		
+		world = MapGenerator.generate(mapType, intersectionCount, 7);
+		graph = new Graph(world);
+		offHeapGraph = new Graph(world, Graph.StorageType.OffHeap);
+		System.out.println(graph.buildContractionHierarchy().getStatistics());
+		roads = world.getRoads();
+		startingRoads = new Road[QUERYCOUNT];
+		destinations = new Point2D.Double[QUERYCOUNT];
+		for(int i=0;i<QUERYCOUNT;i++){
+			startingRoads[i] = roads[random.nextInt(roads.length)];
+			destinationRoad = roads[random.nextInt(roads.length)];
+			destinations[i] = new Point2D.Double((destinationRoad.getStartPos().x+destinationRoad.getEndPos().x)/2,
+					(destinationRoad.getStartPos().y+destinationRoad.getEndPos().y)/2);
+		}
+		
+		//Follow the longest of the first few routes for the distance to destination benchmark
+		route = new Route(graph);
+		for(int i=0;i<CACHEDQUERYCOUNT;i++){
+			plannedRoute = graph.planRoute(startingRoads[i], destinations[i]);
+			if(plannedRoute != null && (longestRoute == null || plannedRoute.size() > longestRoute.size())){
+				longestRoute = plannedRoute;
+			}
+		}
+		route.followRoute(longestRoute, destinations[0]);
+		route.nextIntersectionPosition();
+		
+		//Place the cars at the start of the first few starting roads and use the next destinations as jobs
+		distanceTable = new DistanceTable(graph);
+		tableRoads = Arrays.copyOf(startingRoads, TABLESOURCES);
+		tablePositions = new Point2D.Double[TABLESOURCES];
+		for(int i=0;i<TABLESOURCES;i++){
+			tablePositions[i] = tableRoads[i].getStartPos();
+		}tableDestinations = Arrays.copyOfRange(destinations, TABLESOURCES, TABLESOURCES+TABLEDESTINATIONS);
+		
+		snapshotFile = File.createTempFile("graph", ".snapshot");
+		GraphSnapshot.write(graph, world, snapshotFile);
+	}
+	
+	@TearDown
+	public void tearDown(){
+		distanceTable.shutdown();
+		snapshotFile.delete();
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Graph buildGraph(){
+		return new Graph(world);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Graph loadGraphSnapshot(){
+		return GraphSnapshot.load(world, snapshotFile);
+	}
+	
+	@Benchmark
+	public PlannedPath planRoute(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%QUERYCOUNT;
+		return graph.planRoute(startingRoads[query], destinations[query]);
+	}
+	
+	@Benchmark
+	public PlannedPath planRouteOffHeap(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%QUERYCOUNT;
+		return offHeapGraph.planRoute(startingRoads[query], destinations[query]);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public ContractionHierarchy buildContractionHierarchy(){
+		return graph.buildContractionHierarchy();
+	}
+	
+	@Benchmark
+	public PlannedPath planRouteContractionHierarchy(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%QUERYCOUNT;
+		return graph.planRoute(startingRoads[query], destinations[query], Graph.SearchType.ContractionHierarchy);
+	}
+	
+	@Benchmark
+	public PlannedPath planRouteBidirectional(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%QUERYCOUNT;
+		return graph.planRoute(startingRoads[query], destinations[query], Graph.SearchType.BidirectionalAStar);
+	}
+	
+	@Benchmark
+	public PlannedPath planRouteTimeDependent(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%QUERYCOUNT;
+		return graph.planRoute(startingRoads[query], destinations[query], Graph.SearchType.TimeDependent);
+	}
+	
+	@Benchmark
+	public PlannedPath planRouteCached(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%CACHEDQUERYCOUNT;
+		return graph.planRoute(startingRoads[query], destinations[query]);
+	}
+	
+	@Benchmark
+	public DistanceMatrix distanceTable(){
+		return distanceTable.calculate(tableRoads, tablePositions, tableDestinations);
+	}
+	
+	@Benchmark
+	public boolean isValidRoute(){
+		int query = nextQuery;
+		nextQuery = (nextQuery+1)%QUERYCOUNT;
+		return graph.isValidRoute(startingRoads[query], destinations[query]);
+	}
+	
+	@Benchmark
+	public double distanceToDestination(){
+		return route.distanceToDestination();
+	}
+}
@@ -0,0 +1,139 @@
+package group26.benchmark;
+
+import java.awt.geom.Point2D;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+import com.badlogic.gdx.math.Vector2;
+import com.sun.management.ThreadMXBean;
+import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse;
+import com.unimelb.swen30006.partc.core.World;
+import com.unimelb.swen30006.partc.core.infrastructure.TrafficLight;
+import com.unimelb.swen30006.partc.core.objects.Car;
+import com.unimelb.swen30006.partc.roads.Road;
+
+import group26.planning.Graph;
+import group26.planning.GraphCache;
+import group26.planning.PlanningControl;
+
+/**
+ * Checks that updating a car that is following a planned route allocates nothing on the heap
+ * Cars are driven along a route until the updates are compiled, then the bytes allocated by the updating thread
+ * are measured over a whole journey after the route has been planned
+ * The only allocation allowed is the new travel times the graph publishes when the congestion the car reports changes
+ * them, two arrays with a travel time for every road at most once per second of simulation time, and the check
+ * fails if the updates allocated anything else
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public final class TickAllocationCheck {
+	//The number of intersections on the map the cars drive on
+	private static final int INTERSECTIONCOUNT = 1000;
+	//The number of journeys driven before measuring so the updates are compiled
+	private static final int WARMUPJOURNEYS = 50;
+	//The time passed between updates, and the most updates a journey may take
+	private static final float DELTA = 1/60f;
+	private static final int MAXIMUMTICKS = 100000;
+	//An array the size of the published travel times, kept so the allocation of it is not optimised away
+	private static double[] publishedTimes;
+	
+	private TickAllocationCheck(){
+	}
+	
+	/**
+	 * Runs the check
+	 * @param args Unused
+	 */
+	public static void main(String[] args){
+		World world = MapGenerator.generate(MapGenerator.MapType.Grid, INTERSECTIONCOUNT, 7);
+		ThreadMXBean threads = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+		PerceptionResponse[] results = perceptionResults();
+		long threadId = Thread.currentThread().getId();
+		Graph graph = GraphCache.getGraph(world);
+		long before, after, overhead, allocated, publicationSize;
+		int ticks, publications, version;
+		PlanningControl planning;
+		
+		for(int i=0;i<WARMUPJOURNEYS;i++){
+			drive(startJourney(world), results);
+		}
+		
+		//Measure the allocations of the measurement itself so they are not counted as allocations of the updates
+		before = threads.getThreadAllocatedBytes(threadId);
+		after = threads.getThreadAllocatedBytes(threadId);
+		overhead = after - before;
+		
+		//Measure the size of the travel times published by the graph
+		before = threads.getThreadAllocatedBytes(threadId);
+		publishedTimes = new double[graph.getCongestionModel().getRoadCount()];
+		after = threads.getThreadAllocatedBytes(threadId);
+		publicationSize = 2*(after - before - overhead);
+		
+		planning = startJourney(world);
+		version = graph.getVersion();
+		before = threads.getThreadAllocatedBytes(threadId);
+		ticks = drive(planning, results);
+		after = threads.getThreadAllocatedBytes(threadId);
+		allocated = after - before - overhead;
+		publications = graph.getVersion() - version;
+		
+		System.out.println(ticks + " updates allocated " + allocated + " bytes, " + (publications*publicationSize) + " bytes of them for "
+				+ publications + " publications of new travel times of " + publishedTimes.length + " roads");
+		if(allocated != publications*publicationSize){
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Places a car at the start of the map and plans its route to the far corner
+	 * @param world The world the car drives in
+	 * @return The planning system of the car
+	 */
+	private static PlanningControl startJourney(World world){
+		Road[] roads = world.getRoads();
+		Road startingRoad = roads[0];
+		Road destinationRoad = roads[roads.length-1];
+		Car car = new Car(new Point2D.Double(startingRoad.getStartPos().x, startingRoad.getStartPos().y));
+		PlanningControl planning = new PlanningControl(world, car);
+		planning.planRoute(new Point2D.Double((destinationRoad.getStartPos().x+destinationRoad.getEndPos().x)/2,
+				(destinationRoad.getStartPos().y+destinationRoad.getEndPos().y)/2));
+		return planning;
+	}
+	
+	/**
+	 * Updates a car until it reaches its destination
+	 * @param planning The planning system of the car
+	 * @param results The perception results given at every update
+	 * @return The number of updates
+	 */
+	private static int drive(PlanningControl planning, PerceptionResponse[] results){
+		int ticks = 0;
+		while(planning.eta() > 0 && ticks < MAXIMUMTICKS){
+			planning.update(results, DELTA);
+			ticks++;
+		}return ticks;
+	}
+	
+	/**
+	 * Creates perception results holding a green traffic light ahead and a car that is not a threat
+	 * @return The perception results
+	 */
+	private static PerceptionResponse[] perceptionResults(){
+		PerceptionResponse trafficLight = new PerceptionResponse();
+		PerceptionResponse vehicle = new PerceptionResponse();
+		
+		trafficLight.objectType = PerceptionResponse.Classification.TrafficLight;
+		trafficLight.distance = 20;
+		trafficLight.timeToCollision = -1;
+		trafficLight.direction = new Vector2(0, 1);
+		trafficLight.information = new HashMap<String, Object>();
+		trafficLight.information.put("State", TrafficLight.State.Green);
+		
+		vehicle.objectType = PerceptionResponse.Classification.Car;
+		vehicle.distance = 30;
+		vehicle.timeToCollision = -1;
+		vehicle.direction = new Vector2(0, -1);
+		vehicle.information = new HashMap<String, Object>();
+		return new PerceptionResponse[]{trafficLight, vehicle};
+	}
+}
@@ -0,0 +1,14 @@
+package com.unimelb.swen30006.partc.ai.interfaces;
+
+import java.awt.geom.Point2D;
+
+/**
+ * A local stand-in for the planning interface of the simulation
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public interface IPlanning {
+	public boolean planRoute(Point2D.Double destination);
+	public void update(PerceptionResponse[] results, float delta);
+	public float eta();
+}
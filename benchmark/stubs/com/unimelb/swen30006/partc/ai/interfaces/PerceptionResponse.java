@@ -0,0 +1,23 @@
+package com.unimelb.swen30006.partc.ai.interfaces;
+
+import java.util.HashMap;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * A local stand-in for a perception response providing only what the planning subsystem uses
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class PerceptionResponse {
+	//The kinds of object that may be perceived
+	public enum Classification {
+		Car, TrafficLight
+	}
+	
+	public float distance;
+	public float timeToCollision;
+	public Vector2 direction;
+	public Classification objectType;
+	public HashMap<String, Object> information;
+}
@@ -0,0 +1,58 @@
+package com.unimelb.swen30006.partc.core;
+
+import java.awt.geom.Point2D;
+
+import com.unimelb.swen30006.partc.roads.Intersection;
+import com.unimelb.swen30006.partc.roads.Road;
+
+/**
+ * A local stand-in for the simulation world providing only what the planning subsystem uses
+ * Used to run the planning benchmarks without the rest of the simulation
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class World {
+	//The intersections and roads of the world
+	private Intersection[] intersections;
+	private Road[] roads;
+	
+	/**
+	 * Constructor for the world
+	 * @param intersections The intersections of the world
+	 * @param roads The roads of the world
+	 */
+	public World(Intersection[] intersections, Road[] roads){
+		this.intersections = intersections;
+		this.roads = roads;
+	}
+	
+	/**
+	 * Returns the intersections of the world
+	 * @return The intersections
+	 */
+	public Intersection[] getIntersections(){
+		return intersections;
+	}
+	
+	/**
+	 * Returns the roads of the world
+	 * @return The roads
+	 */
+	public Road[] getRoads(){
+		return roads;
+	}
+	
+	/**
+	 * Returns the road containing the given point
+	 * @param point The point to be checked
+	 * @return The road at the point, or null if the point is not on a road
+	 */
+	public Road roadAtPoint(Point2D.Double point){
+		for(Road road : roads){
+			if(point.x >= Math.min(road.getStartPos().x, road.getEndPos().x) && point.x <= Math.max(road.getStartPos().x, road.getEndPos().x)
+					&& point.y >= Math.min(road.getStartPos().y, road.getEndPos().y) && point.y <= Math.max(road.getStartPos().y, road.getEndPos().y)){
+				return road;
+			}
+		}return null;
+	}
+}
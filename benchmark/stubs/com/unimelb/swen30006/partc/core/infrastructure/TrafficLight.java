@@ -0,0 +1,13 @@
+package com.unimelb.swen30006.partc.core.infrastructure;
+
+/**
+ * A local stand-in for a simulation traffic light providing only what the planning subsystem uses
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class TrafficLight {
+	//The states a traffic light may be in
+	public enum State {
+		Red, Amber, Green
+	}
+}
@@ -0,0 +1,65 @@
+package com.unimelb.swen30006.partc.core.objects;
+
+import java.awt.geom.Point2D;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * A local stand-in for a simulation car providing only what the planning subsystem uses
+ * The car moves in a straight line along its heading, so planning can be driven along a route without the simulation
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class Car {
+	//The change in speed per second while accelerating or braking, and the fastest the car can travel
+	private static final float ACCELERATION = 10;
+	private static final float BRAKING = 20;
+	private static final float MAXIMUMSPEED = 40;
+	
+	//The position and velocity of the car
+	private Point2D.Double position;
+	private Vector2 velocity;
+	//The heading of the car in degrees, its speed and the input given since the last update
+	private float heading;
+	private float speed;
+	private int input;
+	
+	/**
+	 * Constructor for the car
+	 * @param position The starting position of the car
+	 */
+	public Car(Point2D.Double position){
+		this.position = position;
+		this.velocity = new Vector2();
+	}
+	
+	public Point2D.Double getPosition(){
+		return position;
+	}
+	
+	public Vector2 getVelocity(){
+		return velocity;
+	}
+	
+	public void accelerate(){
+		input = 1;
+	}
+	
+	public void brake(){
+		input = -1;
+	}
+	
+	public void turn(float angle){
+		heading = (((heading + angle) % 360) + 360) % 360;
+	}
+	
+	public void update(float delta){
+		if(input > 0){
+			speed = Math.min(MAXIMUMSPEED, speed + (ACCELERATION*delta));
+		}else if(input < 0){
+			speed = Math.max(0, speed - (BRAKING*delta));
+		}input = 0;
+		velocity.set(speed*(float)Math.cos(Math.toRadians(heading)), speed*(float)Math.sin(Math.toRadians(heading)));
+		position.setLocation(position.x + (velocity.x*delta), position.y + (velocity.y*delta));
+	}
+}
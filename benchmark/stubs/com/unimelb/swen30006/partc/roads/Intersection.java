@@ -0,0 +1,36 @@
+package com.unimelb.swen30006.partc.roads;
+
+import java.awt.geom.Point2D;
+import java.util.HashMap;
+
+/**
+ * A local stand-in for a simulation intersection providing only what the planning subsystem uses
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class Intersection {
+	//The directions a road may leave the intersection in
+	public enum Direction {
+		North, South, East, West
+	}
+	
+	//The roads leaving the intersection in each direction
+	public HashMap<Direction, Road> roads;
+	//The position of the centre of the intersection
+	public Point2D.Double pos;
+	//The width and length of the intersection
+	public float width, length;
+	
+	/**
+	 * Constructor for the intersection
+	 * @param pos The position of the centre of the intersection
+	 * @param width The width of the intersection
+	 * @param length The length of the intersection
+	 */
+	public Intersection(Point2D.Double pos, float width, float length){
+		this.roads = new HashMap<Direction, Road>();
+		this.pos = pos;
+		this.width = width;
+		this.length = length;
+	}
+}
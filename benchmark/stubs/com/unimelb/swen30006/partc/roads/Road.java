@@ -0,0 +1,39 @@
+package com.unimelb.swen30006.partc.roads;
+
+import java.awt.geom.Point2D;
+
+/**
+ * A local stand-in for a simulation road providing only what the planning subsystem uses
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class Road {
+	//The positions of either end of the road
+	private Point2D.Double startPos, endPos;
+	
+	/**
+	 * Constructor for the road
+	 * @param startPos The position of the start of the road
+	 * @param endPos The position of the end of the road
+	 */
+	public Road(Point2D.Double startPos, Point2D.Double endPos){
+		this.startPos = startPos;
+		this.endPos = endPos;
+	}
+	
+	/**
+	 * Returns the position of the start of the road
+	 * @return The start position
+	 */
+	public Point2D.Double getStartPos(){
+		return startPos;
+	}
+	
+	/**
+	 * Returns the position of the end of the road
+	 * @return The end position
+	 */
+	public Point2D.Double getEndPos(){
+		return endPos;
+	}
+}
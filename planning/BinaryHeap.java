@@ -0,0 +1,139 @@
+package group26.planning;
+
+import java.util.Arrays;
+
+/**
+ * An indexed binary min heap of node ids ordered by a double key
+ * Supports decreasing the key of a node already in the heap so each node is only queued once
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class BinaryHeap {
+	//The node ids stored in heap order
+	private int[] heap;
+	//The key of each node id
+	private double[] keys;
+	//The position of each node id in the heap, -1 if not in the heap
+	private int[] positions;
+	//The number of node ids in the heap
+	private int size;
+	
+	/**
+	 * Constructor for the heap
+	 * @param capacity The number of node ids that may be stored
+	 */
+	public BinaryHeap(int capacity){
+		this.heap = new int[capacity];
+		this.keys = new double[capacity];
+		this.positions = new int[capacity];
+		Arrays.fill(positions, -1);
+		this.size = 0;
+	}
+	
+	/**
+	 * Returns whether the heap is empty
+	 * @return True if the heap contains no node ids
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+	
+	/**
+	 * Returns whether the given node id is in the heap
+	 * @param id The node id
+	 * @return True if the node id is waiting in the heap
+	 */
+	public boolean contains(int id){
+		return positions[id] != -1;
+	}
+	
+	/**
+	 * Returns the smallest key in the heap
+	 * @return The smallest key, or infinity if the heap is empty
+	 */
+	public double peekKey(){
+		if(size == 0){
+			return Double.POSITIVE_INFINITY;
+		}return keys[heap[0]];
+	}
+	
+	/**
+	 * Adds the node id to the heap, or lowers its key if it is already in the heap
+	 * Keys larger than the current key of a queued node id are ignored
+	 * @param id The node id
+	 * @param key The key of the node id
+	 */
+	public void insertOrDecrease(int id, double key){
+		int position = positions[id];
+		if(position == -1){
+			position = size;
+			size++;
+			heap[position] = id;
+			positions[id] = position;
+		}else if(key >= keys[id]){
+			return;
+		}keys[id] = key;
+		siftUp(position);
+	}
+	
+	/**
+	 * Removes the node id with the smallest key from the heap
+	 * @return The removed node id
+	 */
+	public int removeMin(){
+		int minimum = heap[0];
+		size--;
+		positions[minimum] = -1;
+		if(size > 0){
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}return minimum;
+	}
+	
+	/**
+	 * Removes all node ids from the heap, only touches the ids that are still queued
+	 */
+	public void clear(){
+		for(int i=0;i<size;i++){
+			positions[heap[i]] = -1;
+		}size = 0;
+	}
+	
+	/**
+	 * Moves the node id at the given position up the heap until its parent has a smaller key
+	 * @param position The position in the heap
+	 */
+	private void siftUp(int position){
+		int id = heap[position];
+		int parent;
+		while(position > 0){
+			parent = (position-1)/2;
+			if(keys[heap[parent]] <= keys[id]){
+				break;
+			}heap[position] = heap[parent];
+			positions[heap[position]] = position;
+			position = parent;
+		}heap[position] = id;
+		positions[id] = position;
+	}
+	
+	/**
+	 * Moves the node id at the given position down the heap until its children have larger keys
+	 * @param position The position in the heap
+	 */
+	private void siftDown(int position){
+		int id = heap[position];
+		int child;
+		while((child = (2*position)+1) < size){
+			if(child+1 < size && keys[heap[child+1]] < keys[heap[child]]){
+				child++;
+			}if(keys[id] <= keys[heap[child]]){
+				break;
+			}heap[position] = heap[child];
+			positions[heap[position]] = position;
+			position = child;
+		}heap[position] = id;
+		positions[id] = position;
+	}
+}
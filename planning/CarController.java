@@ -10,6 +10,10 @@ import com.unimelb.swen30006.partc.core.objects.Car;
 public class CarController {
 	private Car car;
 	private final int TURNSPEED = 20;
+	//The part of the requested acceleration not yet applied, carried over so the inputs average to the request
+	private float accelerationRemainder;
+	//The input applied in the latest adjustment, 1 for accelerate, -1 for brake and 0 for neither
+	private int appliedInput;
 	
 	/**
 	 * Constructor for the car controller
@@ -22,7 +26,7 @@ public class CarController {
 	/**
 	 * Adjusts the car based on the given angle and acceleration inputs
 	 * @param turnAngle The desired angle of the car
-	 * @param accelerationValue Indicates whether acceleration is required, positive is accelerate, negative is brake
+	 * @param accelerationValue The acceleration required between -1 for full braking and 1 for full acceleration
 	 */
 	public void adjustCar(int turnAngle, float accelerationValue){
 		accelerate(accelerationValue);
@@ -32,16 +36,33 @@ public class CarController {
 	
 	/**
 	 * Applies acceleration or brake to the car
-	 * @param accelerationValue Indicates whether acceleration is required, positive is accelerate, negative is brake
+	 * The car can only fully accelerate or brake in each update, so partial values are applied as the fraction
+	 * of updates that accelerate or brake, carrying the remainder over to the following updates
+	 * @param accelerationValue The acceleration required between -1 for full braking and 1 for full acceleration
 	 */
 	private void accelerate(float accelerationValue){
-		if(accelerationValue > 0){
+		accelerationRemainder += Math.max(-1, Math.min(1, accelerationValue));
+		if(accelerationRemainder >= 0.5f){
 			car.accelerate();
-		}else if(accelerationValue < 0){
+			accelerationRemainder -= 1;
+			appliedInput = 1;
+		}else if(accelerationRemainder <= -0.5f){
 			car.brake();
+			accelerationRemainder += 1;
+			appliedInput = -1;
+		}else{
+			appliedInput = 0;
 		}
 	}
 	
+	/**
+	 * Returns the input applied to the car in the latest adjustment
+	 * @return 1 if the car accelerated, -1 if it braked and 0 if it did neither
+	 */
+	public int getAppliedInput(){
+		return appliedInput;
+	}
+	
 	/**
 	 * Adjusts the angle of the car to turn it to the given angle
 	 * @param turnAngle The desired angle of the car
@@ -49,9 +70,10 @@ public class CarController {
 	private void turn(int turnAngle){
 		//Check if car already at the desired angle
 		
-		if(car.getVelocity().angle() != turnAngle){
+		float currentAngle = car.getVelocity().angle();
+		if(currentAngle != turnAngle){
 			//Get how much the car needs to turn
-			float angleDifference = turnAngle - car.getVelocity().angle();
+			float angleDifference = turnAngle - currentAngle;
 			//If angle is over 180 degrees then turn in the other direction
 			if(angleDifference > 180){
 				angleDifference -= 360;
@@ -14,6 +14,7 @@ import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse;
 public class CollisionHandler {
 	
 	private PerceptionResponse[] collisionObjectList;
+	private int collisionObjectCount;
 	//private float decelerationRequired;
 	
 	
@@ -22,14 +23,17 @@ public class CollisionHandler {
 	 */
 	public CollisionHandler(){
 		collisionObjectList = null;
+		collisionObjectCount = 0;
 	}
 	
 	/**
-	 * Updates the collisionObject list with the current perception response
-	 * @param current perception result
+	 * Updates the collisionObject list with the most urgent threats from the current perception response
+	 * @param threats The objects on course for a collision, only the first count are used
+	 * @param count The number of threats
 	 */
-	public void update(PerceptionResponse[] result){
-		collisionObjectList = result;
+	public void update(PerceptionResponse[] threats, int count){
+		collisionObjectList = threats;
+		collisionObjectCount = count;
 	}
 	
 	/**
@@ -38,18 +42,31 @@ public class CollisionHandler {
 	 */
 	public boolean collisionImminent()
 	{
-		if(collisionObjectList.length>0)
+		for(int i=0; i<collisionObjectCount; i++)
 		{
-			for(int i=0; i<collisionObjectList.length; i++)
+			if(collisionObjectList[i].timeToCollision<2 && collisionObjectList[i].timeToCollision>-1)
 			{
-				if(collisionObjectList[i].timeToCollision<2 && collisionObjectList[i].timeToCollision>-1)
-				{
-					return true;
-				}
+				return true;
 			}
 		}
 		//decelerationRequired = 20;
 		return false;
 	}
+	
+	/**
+	 * Returns the shortest time to collision with any of the current threats
+	 * @return The time to collision, infinite if no threat is on course for a collision
+	 */
+	public float getTimeToCollision(){
+		float timeToCollision = Float.POSITIVE_INFINITY;
+		for(int i=0; i<collisionObjectCount; i++)
+		{
+			if(collisionObjectList[i].timeToCollision>-1)
+			{
+				timeToCollision = Math.min(timeToCollision, collisionObjectList[i].timeToCollision);
+			}
+		}
+		return timeToCollision;
+	}
 
 }
@@ -0,0 +1,274 @@
+package group26.planning;
+
+import java.util.ArrayList;
+
+/**
+ * A compressed sparse row copy of the road graph built once from the nodes and edges of the graph
+ * Node and edge ids index into primitive arrays so searches do not need to follow object references
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class CompactGraph implements GraphStorage {
+	//The number of intersections and roads
+	private final int nodeCount, edgeCount;
+	//The position of each intersection
+	private final double[] nodeX, nodeY;
+	//The first arc of each node, the arcs of node i run from offsets[i] up to offsets[i+1]
+	private final int[] offsets;
+	//The node at the other end of each arc, -1 if the road has no end intersection
+	private final int[] neighbours;
+	//The edge each arc travels along
+	private final int[] arcEdges;
+	//The length of each road
+	private final double[] edgeLengths;
+	//The nodes at either end of each road, the end node is -1 if the road has no end intersection
+	private final int[] edgeStartNodes, edgeEndNodes;
+	//The position of the far end of each road
+	private final double[] edgeEndX, edgeEndY;
+	//The connected component each node belongs to, nodes can only reach nodes in the same component
+	private final int[] componentIds;
+	
+	/**
+	 * Constructor for the compact graph
+	 * @param nodes The nodes of the graph indexed by their id
+	 * @param edges The edges of the graph indexed by their id
+	 */
+	public CompactGraph(Node[] nodes, Edge[] edges){
+		ArrayList<Edge> nodeEdges;
+		Node endNode;
+		Edge edge;
+		int arc;
+		
+		this.nodeCount = nodes.length;
+		this.edgeCount = edges.length;
+		this.nodeX = new double[nodeCount];
+		this.nodeY = new double[nodeCount];
+		this.offsets = new int[nodeCount+1];
+		
+		//Count the arcs leaving each node to find where each node's arcs start
+		for(int i=0;i<nodeCount;i++){
+			nodeX[i] = nodes[i].getPosition().getX();
+			nodeY[i] = nodes[i].getPosition().getY();
+			offsets[i+1] = offsets[i] + nodes[i].getRoads().size();
+		}
+		
+		this.neighbours = new int[offsets[nodeCount]];
+		this.arcEdges = new int[offsets[nodeCount]];
+		for(int i=0;i<nodeCount;i++){
+			nodeEdges = nodes[i].getRoads();
+			arc = offsets[i];
+			for(Edge nodeEdge : nodeEdges){
+				endNode = nodeEdge.getEndOfRoad(nodes[i]);
+				neighbours[arc] = endNode == null ? -1 : endNode.getId();
+				arcEdges[arc] = nodeEdge.getId();
+				arc++;
+			}
+		}
+		
+		this.edgeLengths = new double[edgeCount];
+		this.edgeStartNodes = new int[edgeCount];
+		this.edgeEndNodes = new int[edgeCount];
+		this.edgeEndX = new double[edgeCount];
+		this.edgeEndY = new double[edgeCount];
+		for(int i=0;i<edgeCount;i++){
+			edge = edges[i];
+			edgeLengths[i] = edge.getLength();
+			edgeStartNodes[i] = edge.getStartNode().getId();
+			if(edge.hasEndNode()){
+				edgeEndNodes[i] = edge.getEndNode().getId();
+				edgeEndX[i] = edge.getEndNode().getPosition().getX();
+				edgeEndY[i] = edge.getEndNode().getPosition().getY();
+			}else{
+				edgeEndNodes[i] = -1;
+				edgeEndX[i] = edge.getEndPosition().getX();
+				edgeEndY[i] = edge.getEndPosition().getY();
+			}
+		}
+		this.componentIds = labelComponents();
+	}
+	
+	/**
+	 * Labels the connected components of the graph using union find over the ends of each road
+	 * @return The component id of each node
+	 */
+	private int[] labelComponents(){
+		int[] parents = new int[nodeCount];
+		int[] sizes = new int[nodeCount];
+		int startRoot, endRoot;
+		
+		for(int i=0;i<nodeCount;i++){
+			parents[i] = i;
+			sizes[i] = 1;
+		}
+		//Join the components at either end of each road, attaching the smaller to the larger
+		for(int i=0;i<edgeCount;i++){
+			if(edgeEndNodes[i] != -1){
+				startRoot = findRoot(parents, edgeStartNodes[i]);
+				endRoot = findRoot(parents, edgeEndNodes[i]);
+				if(startRoot != endRoot){
+					if(sizes[startRoot] < sizes[endRoot]){
+						parents[startRoot] = endRoot;
+						sizes[endRoot] += sizes[startRoot];
+					}else{
+						parents[endRoot] = startRoot;
+						sizes[startRoot] += sizes[endRoot];
+					}
+				}
+			}
+		}
+		//Use the root of each node's set as its component id
+		for(int i=0;i<nodeCount;i++){
+			parents[i] = findRoot(parents, i);
+		}return parents;
+	}
+	
+	/**
+	 * Finds the root of the set containing the node, halving the path to the root as it goes
+	 * @param parents The parent of each node in the union find forest
+	 * @param node The node id
+	 * @return The node id of the root of the set
+	 */
+	private static int findRoot(int[] parents, int node){
+		while(parents[node] != node){
+			parents[node] = parents[parents[node]];
+			node = parents[node];
+		}return node;
+	}
+	
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return The number of nodes
+	 */
+	public int getNodeCount(){
+		return nodeCount;
+	}
+	
+	/**
+	 * Returns the number of edges in the graph
+	 * @return The number of edges
+	 */
+	public int getEdgeCount(){
+		return edgeCount;
+	}
+	
+	/**
+	 * Returns the x position of the node
+	 * @param node The node id
+	 * @return The x position of the intersection
+	 */
+	public double getNodeX(int node){
+		return nodeX[node];
+	}
+	
+	/**
+	 * Returns the y position of the node
+	 * @param node The node id
+	 * @return The y position of the intersection
+	 */
+	public double getNodeY(int node){
+		return nodeY[node];
+	}
+	
+	/**
+	 * Returns the first arc leaving the node
+	 * @param node The node id
+	 * @return The index of the first arc of the node
+	 */
+	public int getFirstArc(int node){
+		return offsets[node];
+	}
+	
+	/**
+	 * Returns the index after the last arc leaving the node
+	 * @param node The node id
+	 * @return The index one past the last arc of the node
+	 */
+	public int getEndArc(int node){
+		return offsets[node+1];
+	}
+	
+	/**
+	 * Returns the node at the other end of the arc
+	 * @param arc The arc index
+	 * @return The node id, or -1 if the road has no end intersection
+	 */
+	public int getArcTarget(int arc){
+		return neighbours[arc];
+	}
+	
+	/**
+	 * Returns the edge the arc travels along
+	 * @param arc The arc index
+	 * @return The edge id
+	 */
+	public int getArcEdge(int arc){
+		return arcEdges[arc];
+	}
+	
+	/**
+	 * Returns the length of the edge
+	 * @param edge The edge id
+	 * @return The length of the road, or infinity if it has no end intersection
+	 */
+	public double getEdgeLength(int edge){
+		return edgeLengths[edge];
+	}
+	
+	/**
+	 * Returns the node the edge starts at
+	 * @param edge The edge id
+	 * @return The start node id
+	 */
+	public int getEdgeStartNode(int edge){
+		return edgeStartNodes[edge];
+	}
+	
+	/**
+	 * Returns the node the edge ends at
+	 * @param edge The edge id
+	 * @return The end node id, or -1 if the road has no end intersection
+	 */
+	public int getEdgeEndNode(int edge){
+		return edgeEndNodes[edge];
+	}
+	
+	/**
+	 * Returns the x position of the far end of the edge
+	 * @param edge The edge id
+	 * @return The x position of the end of the road
+	 */
+	public double getEdgeEndX(int edge){
+		return edgeEndX[edge];
+	}
+	
+	/**
+	 * Returns the y position of the far end of the edge
+	 * @param edge The edge id
+	 * @return The y position of the end of the road
+	 */
+	public double getEdgeEndY(int edge){
+		return edgeEndY[edge];
+	}
+	
+	/**
+	 * Returns the connected component the node belongs to
+	 * @param node The node id
+	 * @return The component id, equal for two nodes only if a route exists between them
+	 */
+	public int getComponent(int node){
+		return componentIds[node];
+	}
+	
+	/**
+	 * Calculates the straight line distance from the node to the given position
+	 * @param node The node id
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The distance from the intersection to the position
+	 */
+	public double straightLineDistance(int node, double x, double y){
+		double xDif = x - nodeX[node];
+		double yDif = y - nodeY[node];
+		return Math.sqrt((xDif*xDif)+(yDif*yDif));
+	}
+}
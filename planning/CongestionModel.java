@@ -0,0 +1,169 @@
+package group26.planning;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates the expected travel time along each road from the congestion the fleet observes
+ * Cars report observations with lock free counters, and the counters are folded into the published
+ * travel times at most once per refresh interval of simulation time so that routes planned on the same costs can
+ * still be cached, and so that the same updates always publish the same travel times
+ * New travel times are only published when a reported observation changes the travel time of a road, so a refresh
+ * without observations allocates nothing and leaves the graph unchanged
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class CongestionModel {
+	//The speed of a car on an empty road, in the same units as the planning control average speed
+	public static final double FREEFLOWSPEED = 40;
+	//The fraction each vehicle seen on a road slows down the traffic on that road
+	private static final double VEHICLEDELAY = 0.25;
+	//The weight given to the latest observations when they are folded into the averages
+	private static final double SMOOTHING = 0.3;
+	//Observations are stored as whole numbers of thousandths
+	private static final double FIXEDPOINTSCALE = 1000;
+	//The shortest simulation time between publishing new travel times in seconds
+	private static final double REFRESHINTERVAL = 1;
+	
+	//The free flow travel time of each road
+	private final double[] freeFlowTimes;
+	//The observations reported for each road since the last refresh
+	private final AtomicLongArray observationCounts, vehicleTotals, dwellTotals;
+	//The smoothed average number of vehicles and traffic light dwell time of each road
+	private final double[] averageVehicles, averageDwells;
+	//The published expected travel time of each road, replaced as a whole on each refresh
+	private volatile double[] travelTimes;
+	//The published expected travel time of each road not counting time waiting at traffic lights
+	private volatile double[] movingTimes;
+	//The earliest simulation time the next refresh may happen
+	private double nextRefreshTime;
+	
+	/**
+	 * Constructor for the congestion model, every road starts at its free flow travel time
+	 * @param compactGraph The graph containing the roads
+	 */
+	public CongestionModel(GraphStorage compactGraph){
+		int edgeCount = compactGraph.getEdgeCount();
+		this.freeFlowTimes = new double[edgeCount];
+		for(int edge=0;edge<edgeCount;edge++){
+			freeFlowTimes[edge] = compactGraph.getEdgeLength(edge)/FREEFLOWSPEED;
+		}
+		this.observationCounts = new AtomicLongArray(edgeCount);
+		this.vehicleTotals = new AtomicLongArray(edgeCount);
+		this.dwellTotals = new AtomicLongArray(edgeCount);
+		this.averageVehicles = new double[edgeCount];
+		this.averageDwells = new double[edgeCount];
+		this.travelTimes = freeFlowTimes.clone();
+		this.movingTimes = freeFlowTimes.clone();
+		this.nextRefreshTime = REFRESHINTERVAL;
+	}
+	
+	/**
+	 * Records an observation of a road, may be called by many cars at once
+	 * @param edge The edge id of the road
+	 * @param vehicleCount The average number of vehicles seen on the road
+	 * @param lightDwell The time spent waiting at traffic lights on the road
+	 */
+	public void report(int edge, float vehicleCount, float lightDwell){
+		vehicleTotals.addAndGet(edge, Math.round(vehicleCount*FIXEDPOINTSCALE));
+		dwellTotals.addAndGet(edge, Math.round(lightDwell*FIXEDPOINTSCALE));
+		observationCounts.incrementAndGet(edge);
+	}
+	
+	/**
+	 * Folds in the observations and publishes new travel times if the refresh interval has passed since the last refresh
+	 * @param time The current simulation time in seconds
+	 * @return True if new travel times were published
+	 */
+	public synchronized boolean refreshIfDue(double time){
+		if(time < nextRefreshTime){
+			return false;
+		}nextRefreshTime = time + REFRESHINTERVAL;
+		return refresh();
+	}
+	
+	/**
+	 * Folds the observations reported since the last refresh into the averages, then publishes new travel times
+	 * if the travel time of any road changed
+	 * @return True if any travel time changed and new travel times were published
+	 */
+	public synchronized boolean refresh(){
+		double[] newTravelTimes, newMovingTimes;
+		boolean changed = false;
+		long observations;
+		
+		for(int edge=0;edge<freeFlowTimes.length;edge++){
+			observations = observationCounts.getAndSet(edge, 0);
+			if(observations > 0){
+				averageVehicles[edge] += SMOOTHING*((vehicleTotals.getAndSet(edge, 0)/FIXEDPOINTSCALE/observations) - averageVehicles[edge]);
+				averageDwells[edge] += SMOOTHING*((dwellTotals.getAndSet(edge, 0)/FIXEDPOINTSCALE/observations) - averageDwells[edge]);
+				if(movingTime(edge) != movingTimes[edge] || movingTime(edge) + averageDwells[edge] != travelTimes[edge]){
+					changed = true;
+				}
+			}
+		}
+		if(!changed){
+			return false;
+		}
+		//Roads without new observations have the same averages, so they keep the travel times already published
+		newTravelTimes = new double[freeFlowTimes.length];
+		newMovingTimes = new double[freeFlowTimes.length];
+		for(int edge=0;edge<freeFlowTimes.length;edge++){
+			newMovingTimes[edge] = movingTime(edge);
+			newTravelTimes[edge] = newMovingTimes[edge] + averageDwells[edge];
+		}movingTimes = newMovingTimes;
+		travelTimes = newTravelTimes;
+		return true;
+	}
+	
+	/**
+	 * Calculates the moving time of a road from its average number of vehicles
+	 * @param edge The edge id of the road
+	 * @return The free flow travel time slowed by the vehicles on the road
+	 */
+	private double movingTime(int edge){
+		return freeFlowTimes[edge]*(1 + (VEHICLEDELAY*averageVehicles[edge]));
+	}
+	
+	/**
+	 * Returns the number of roads the model estimates travel times for
+	 * @return The number of roads
+	 */
+	public int getRoadCount(){
+		return freeFlowTimes.length;
+	}
+	
+	/**
+	 * Returns the expected time to travel along the road
+	 * @param edge The edge id of the road
+	 * @return The expected travel time, never less than the free flow travel time
+	 */
+	public double getTravelTime(int edge){
+		return travelTimes[edge];
+	}
+	
+	/**
+	 * Returns the expected time to travel along the road at the free flow speed slowed by the vehicles on it,
+	 * not counting time waiting at traffic lights
+	 * @param edge The edge id of the road
+	 * @return The expected moving time, never less than the free flow travel time
+	 */
+	public double getMovingTime(int edge){
+		return movingTimes[edge];
+	}
+	
+	/**
+	 * Returns the published travel times of every road, the array must not be changed
+	 * @return The expected travel time of each road indexed by edge id
+	 */
+	double[] getTravelTimes(){
+		return travelTimes;
+	}
+	
+	/**
+	 * Returns the published moving times of every road, the array must not be changed
+	 * @return The expected moving time of each road indexed by edge id
+	 */
+	double[] getMovingTimes(){
+		return movingTimes;
+	}
+}
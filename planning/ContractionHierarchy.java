@@ -0,0 +1,822 @@
+package group26.planning;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A customizable contraction hierarchy over the compact graph for answering long distance route queries quickly
+ * Intersections are ordered by nested dissection of the map, each part of the map is split in half along its longer
+ * side and the intersections with roads across the split are contracted after both halves, so few shortcuts are needed
+ * Contracting an intersection joins every pair of its more important neighbours whatever the travel times, so the
+ * same shortcuts serve every version of the travel times and a query only ever has to search towards more important
+ * intersections
+ * Customizing prices the arcs for one version of the travel times, each arc at the fastest of the roads it joins and
+ * the paths through each less important neighbour of both its ends, so new travel times never need the graph to be
+ * ordered and contracted again and every route is the fastest for the travel times the hierarchy was customized for
+ * Arcs beaten by a path through more important nodes are then left out of searches, so queries only search the
+ * arcs the current travel times need
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class ContractionHierarchy {
+	//Parts of the map with at most this many intersections are not split any further
+	private static final int DISSECTIONLEAFSIZE = 8;
+	private static final int INITIALARCCAPACITY = 16;
+	
+	//The number of nodes in the hierarchy
+	private final int nodeCount;
+	//The order each node was contracted in, more important nodes have a higher rank
+	private final int[] ranks;
+	//The node with each rank
+	private final int[] rankedNodes;
+	//The arcs leading from each node to more important nodes, the arcs of a node are between its offset and the next node's offset
+	private final int[] upwardOffsets;
+	private final int[] upwardArcs;
+	//The more important end of each upward arc
+	private final int[] upwardNodes;
+	//The upward arcs searches use for the travel times the hierarchy was customized for, laid out as the upward arcs
+	private final int[] searchOffsets;
+	private final int[] searchArcs;
+	//The nodes at either end of each arc, original roads and shortcuts alike
+	private final int[] arcStartNodes;
+	private final int[] arcEndNodes;
+	//The arc joining the ends of each edge in the graph, -1 for edges that do not join two different intersections
+	private final int[] edgeArcs;
+	//The travel time along each arc for the travel times the hierarchy was customized for
+	private final double[] arcCosts;
+	//The two arcs the fastest path along each arc takes, the first touches the start node and the second the end node,
+	//-1 if the fastest path is one of the roads the arc joins
+	private final int[] firstChildArcs;
+	private final int[] secondChildArcs;
+	//The number of arcs and how many of them are shortcuts that do not join the ends of any road
+	private final int arcCount;
+	private final int shortcutCount;
+	//The version of the graph the travel times were taken from
+	private final int graphVersion;
+	//The time spent building the hierarchy, and customizing it for the current travel times, in nanoseconds
+	private final long preprocessingTime;
+	private final long customizationTime;
+	//The number of times the hierarchy has been customized for new travel times since it was built
+	private final int customizationCount;
+	//The number of searches that used A* search instead because the hierarchy did not match the graph version,
+	//shared by every customization of the same hierarchy
+	private final AtomicLong fallbackCount;
+	//The forward and backward search states of each thread
+	private final ThreadLocal<SearchState[]> searchStates;
+	
+	//The arcs of each node, only used while building the hierarchy
+	private int[][] adjacency;
+	private int[] adjacencySizes;
+	//The arcs added so far while building the hierarchy
+	private int[] buildStartNodes, buildEndNodes;
+	private int buildArcCount;
+	//The side of the split each node of the part of the map being dissected is on, and the next side to hand out
+	private int[] sides;
+	private int nextSide;
+	//Working space for dissecting the map
+	private double[] coordinates;
+	private int[] dissectedNodes;
+	
+	/**
+	 * Constructor for the contraction hierarchy, contracts every node of the graph and customizes the hierarchy
+	 * for the travel times
+	 * @param compactGraph The graph the hierarchy is built over
+	 * @param travelTimes The travel time of each edge in the graph
+	 * @param graphVersion The version of the graph the travel times belong to
+	 */
+	public ContractionHierarchy(GraphStorage compactGraph, double[] travelTimes, int graphVersion){
+		long buildStart = System.nanoTime();
+		int[] nodes;
+		int originalArcCount;
+		
+		this.nodeCount = compactGraph.getNodeCount();
+		this.graphVersion = graphVersion;
+		this.ranks = new int[nodeCount];
+		this.rankedNodes = new int[nodeCount];
+		this.edgeArcs = new int[compactGraph.getEdgeCount()];
+		
+		addOriginalRoads(compactGraph);
+		originalArcCount = buildArcCount;
+		nodes = new int[nodeCount];
+		for(int node=0;node<nodeCount;node++){
+			nodes[node] = node;
+		}
+		sides = new int[nodeCount];
+		Arrays.fill(sides, -1);
+		nextSide = 0;
+		coordinates = new double[nodeCount];
+		dissectedNodes = new int[nodeCount];
+		dissect(compactGraph, nodes, 0, nodeCount, 0);
+		for(int node=0;node<nodeCount;node++){
+			rankedNodes[ranks[node]] = node;
+		}
+		contractNodes();
+		
+		this.arcCount = buildArcCount;
+		this.shortcutCount = buildArcCount - originalArcCount;
+		this.arcStartNodes = Arrays.copyOf(buildStartNodes, arcCount);
+		this.arcEndNodes = Arrays.copyOf(buildEndNodes, arcCount);
+		this.upwardOffsets = new int[nodeCount+1];
+		this.upwardArcs = new int[arcCount];
+		this.upwardNodes = new int[arcCount];
+		buildUpwardArcs();
+		
+		//Release the working state of the build
+		adjacency = null;
+		adjacencySizes = null;
+		buildStartNodes = buildEndNodes = null;
+		sides = dissectedNodes = null;
+		coordinates = null;
+		
+		this.arcCosts = new double[arcCount];
+		this.firstChildArcs = new int[arcCount];
+		this.secondChildArcs = new int[arcCount];
+		this.searchOffsets = new int[nodeCount+1];
+		this.searchArcs = new int[arcCount];
+		this.customizationTime = price(travelTimes);
+		this.customizationCount = 0;
+		this.searchStates = createSearchStates();
+		this.fallbackCount = new AtomicLong();
+		this.preprocessingTime = System.nanoTime() - buildStart;
+	}
+	
+	/**
+	 * Constructor for a customized hierarchy, shares the contraction order and arcs of the hierarchy
+	 * and prices every arc for the new travel times
+	 * @param hierarchy The hierarchy to customize
+	 * @param travelTimes The travel time of each edge in the graph
+	 * @param graphVersion The version of the graph the travel times belong to
+	 */
+	private ContractionHierarchy(ContractionHierarchy hierarchy, double[] travelTimes, int graphVersion){
+		this.nodeCount = hierarchy.nodeCount;
+		this.graphVersion = graphVersion;
+		this.ranks = hierarchy.ranks;
+		this.rankedNodes = hierarchy.rankedNodes;
+		this.upwardOffsets = hierarchy.upwardOffsets;
+		this.upwardArcs = hierarchy.upwardArcs;
+		this.upwardNodes = hierarchy.upwardNodes;
+		this.arcStartNodes = hierarchy.arcStartNodes;
+		this.arcEndNodes = hierarchy.arcEndNodes;
+		this.edgeArcs = hierarchy.edgeArcs;
+		this.arcCount = hierarchy.arcCount;
+		this.shortcutCount = hierarchy.shortcutCount;
+		this.arcCosts = new double[arcCount];
+		this.firstChildArcs = new int[arcCount];
+		this.secondChildArcs = new int[arcCount];
+		this.searchOffsets = new int[nodeCount+1];
+		this.searchArcs = new int[arcCount];
+		this.customizationTime = price(travelTimes);
+		this.customizationCount = hierarchy.customizationCount + 1;
+		this.searchStates = createSearchStates();
+		this.fallbackCount = hierarchy.fallbackCount;
+		this.preprocessingTime = hierarchy.preprocessingTime;
+	}
+	
+	/**
+	 * Creates a copy of the hierarchy customized for new travel times, leaving this hierarchy unchanged for the
+	 * searches still using it
+	 * @param travelTimes The travel time of each edge in the graph
+	 * @param graphVersion The version of the graph the travel times belong to
+	 * @return The customized hierarchy
+	 */
+	public ContractionHierarchy customize(double[] travelTimes, int graphVersion){
+		return new ContractionHierarchy(this, travelTimes, graphVersion);
+	}
+	
+	/**
+	 * Creates the forward and backward search states of each thread
+	 * @return The search states of each thread, created when a thread first searches the hierarchy
+	 */
+	private ThreadLocal<SearchState[]> createSearchStates(){
+		return new ThreadLocal<SearchState[]>(){
+			@Override
+			protected SearchState[] initialValue(){
+				return new SearchState[] {new SearchState(nodeCount, 0), new SearchState(nodeCount, 0)};
+			}
+		};
+	}
+	
+	/**
+	 * Returns the version of the graph the hierarchy was customized for
+	 * @return The graph version
+	 */
+	public int getGraphVersion(){
+		return graphVersion;
+	}
+	
+	/**
+	 * Returns the time spent building the hierarchy
+	 * @return The preprocessing time in milliseconds
+	 */
+	public double getPreprocessingTime(){
+		return preprocessingTime/1000000.0;
+	}
+	
+	/**
+	 * Returns the time spent pricing the arcs for the travel times the hierarchy was last customized for
+	 * @return The customization time in milliseconds
+	 */
+	public double getCustomizationTime(){
+		return customizationTime/1000000.0;
+	}
+	
+	/**
+	 * Returns the number of times the hierarchy has been customized for new travel times since it was built
+	 * @return The number of customizations
+	 */
+	public int getCustomizationCount(){
+		return customizationCount;
+	}
+	
+	/**
+	 * Returns the number of shortcuts added while contracting the graph
+	 * @return The number of shortcuts
+	 */
+	public int getShortcutCount(){
+		return shortcutCount;
+	}
+	
+	/**
+	 * Returns an estimate of the memory used by the arrays of the hierarchy, not counting the search states of each thread
+	 * @return The memory used in bytes
+	 */
+	public long getMemoryUsage(){
+		return (8L*nodeCount) + (8L*upwardOffsets.length) + (12L*upwardArcs.length) + (4L*edgeArcs.length) + (24L*arcCount);
+	}
+	
+	/**
+	 * Records a search that used A* search instead of the hierarchy because the hierarchy did not match the graph version
+	 */
+	void recordFallback(){
+		fallbackCount.incrementAndGet();
+	}
+	
+	/**
+	 * Returns the number of searches that used A* search instead of the hierarchy because it did not match the graph version
+	 * @return The number of fallback searches
+	 */
+	public long getFallbackCount(){
+		return fallbackCount.get();
+	}
+	
+	/**
+	 * Returns a summary of the size of the hierarchy, the cost of building and customizing it and how often it did
+	 * not match the graph version
+	 * @return The preprocessing time, memory use, arc counts, customizations and fallback searches of the hierarchy
+	 */
+	public String getStatistics(){
+		return "Contraction hierarchy nodes:" + nodeCount + " arcs:" + arcCount + " shortcuts:" + shortcutCount + " preprocessing time:" + getPreprocessingTime() + "ms memory:" + (getMemoryUsage()/1024) + "KB customizations:" + customizationCount + " customization time:" + getCustomizationTime() + "ms fallbacks:" + getFallbackCount();
+	}
+	
+	/**
+	 * Finds the fastest route from the starting node to any of the goal nodes, including the cost of reaching
+	 * the destination from the goal node
+	 * Searches upwards from both ends at once and stops when neither search can improve on the best meeting point
+	 * @param startingNode The node the route starts from
+	 * @param goalNodes The nodes the destination can be reached from directly, may contain duplicates
+	 * @param goalCosts The cost of reaching the destination from each goal node
+	 * @param goalNodeCount The number of goal nodes
+	 * @return The node ids on the route in the order they are travelled, or null if no goal node can be reached
+	 */
+	public int[] findRoute(int startingNode, int[] goalNodes, double[] goalCosts, int goalNodeCount){
+		SearchState[] states = searchStates.get();
+		SearchState forward = states[0];
+		SearchState backward = states[1];
+		BinaryHeap forwardSet = forward.getOpenSet();
+		BinaryHeap backwardSet = backward.getOpenSet();
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = -1;
+		int node;
+		
+		forward.beginSearch();
+		backward.beginSearch();
+		forward.setCost(startingNode, 0, -1);
+		forwardSet.insertOrDecrease(startingNode, 0);
+		for(int i=0;i<goalNodeCount;i++){
+			if(goalCosts[i] < backward.getCost(goalNodes[i])){
+				backward.setCost(goalNodes[i], goalCosts[i], -1);
+				backwardSet.insertOrDecrease(goalNodes[i], goalCosts[i]);
+			}
+		}
+		
+		//Settle the closer of the two searches each step until neither can find a faster meeting point
+		while(Math.min(forwardSet.peekKey(), backwardSet.peekKey()) < bestCost){
+			if(forwardSet.peekKey() <= backwardSet.peekKey()){
+				node = settle(forward);
+				if(backward.isReached(node) && forward.getCost(node) + backward.getCost(node) < bestCost){
+					bestCost = forward.getCost(node) + backward.getCost(node);
+					meetingNode = node;
+				}
+			}else{
+				node = settle(backward);
+				if(forward.isReached(node) && forward.getCost(node) + backward.getCost(node) < bestCost){
+					bestCost = forward.getCost(node) + backward.getCost(node);
+					meetingNode = node;
+				}
+			}
+		}
+		
+		if(meetingNode == -1){
+			return null;
+		}return unpackRoute(forward, backward, meetingNode);
+	}
+	
+	/**
+	 * Settles the closest open node of a search and relaxes its arcs to more important nodes
+	 * A node that can be reached faster from a more important node already reached is not on a fastest route
+	 * through the hierarchy, so its arcs are not relaxed
+	 * The previous node of each reached node is the arc it was reached along
+	 * @param searchState The search to advance
+	 * @return The settled node
+	 */
+	private int settle(SearchState searchState){
+		BinaryHeap openSet = searchState.getOpenSet();
+		int node = openSet.removeMin();
+		double cost = searchState.getCost(node);
+		double tentativeCost;
+		int arc, nextNode;
+		
+		searchState.close(node);
+		for(int i=searchOffsets[node];i<searchOffsets[node+1];i++){
+			arc = searchArcs[i];
+			if(searchState.getCost(otherEnd(arc, node)) + arcCosts[arc] < cost){
+				return node;
+			}
+		}
+		for(int i=searchOffsets[node];i<searchOffsets[node+1];i++){
+			arc = searchArcs[i];
+			nextNode = otherEnd(arc, node);
+			tentativeCost = cost + arcCosts[arc];
+			if(tentativeCost < searchState.getCost(nextNode)){
+				searchState.setCost(nextNode, tentativeCost, arc);
+				openSet.insertOrDecrease(nextNode, tentativeCost);
+			}
+		}return node;
+	}
+	
+	/**
+	 * Builds the route through the meeting node by following the arcs of both searches and expanding their shortcuts
+	 * The arcs are expanded from a stack holding each arc with the end of it that is travelled from
+	 * @param forward The search from the starting node
+	 * @param backward The search from the goal nodes
+	 * @param meetingNode The node where the searches met on the fastest route
+	 * @return The node ids on the route in the order they are travelled
+	 */
+	private int[] unpackRoute(SearchState forward, SearchState backward, int meetingNode){
+		int[] pending, route;
+		int pendingCount, routeLength, forwardArcCount = 0, backwardArcCount = 0;
+		int node, arc, nextNode, firstChild, secondChild, index;
+		
+		for(node=meetingNode;(arc = backward.getPreviousNode(node)) != -1;node=otherEnd(arc, node)){
+			backwardArcCount++;
+		}for(node=meetingNode;(arc = forward.getPreviousNode(node)) != -1;node=otherEnd(arc, node)){
+			forwardArcCount++;
+		}
+		pendingCount = 2*(forwardArcCount+backwardArcCount);
+		pending = new int[Math.max(INITIALARCCAPACITY, pendingCount*2)];
+		//The arcs from the meeting node down to the goal node are expanded last so they go to the bottom of the stack
+		index = backwardArcCount-1;
+		for(node=meetingNode;(arc = backward.getPreviousNode(node)) != -1;node=otherEnd(arc, node)){
+			pending[2*index] = arc;
+			pending[(2*index)+1] = node;
+			index--;
+		}
+		//The arcs from the starting node up to the meeting node are found in reverse so the first arc ends on top
+		index = backwardArcCount;
+		for(node=meetingNode;(arc = forward.getPreviousNode(node)) != -1;node=nextNode){
+			nextNode = otherEnd(arc, node);
+			pending[2*index] = arc;
+			pending[(2*index)+1] = nextNode;
+			index++;
+		}
+		
+		route = new int[Math.max(INITIALARCCAPACITY, forwardArcCount+backwardArcCount+1)];
+		route[0] = node;
+		routeLength = 1;
+		while(pendingCount > 0){
+			pendingCount -= 2;
+			arc = pending[pendingCount];
+			node = pending[pendingCount+1];
+			if(firstChildArcs[arc] == -1){
+				if(routeLength == route.length){
+					route = Arrays.copyOf(route, routeLength*2);
+				}route[routeLength] = otherEnd(arc, node);
+				routeLength++;
+			}else{
+				//Expand the half touching the node already on the route first
+				if(node == arcStartNodes[arc]){
+					firstChild = firstChildArcs[arc];
+					secondChild = secondChildArcs[arc];
+				}else{
+					firstChild = secondChildArcs[arc];
+					secondChild = firstChildArcs[arc];
+				}
+				if(pendingCount+4 > pending.length){
+					pending = Arrays.copyOf(pending, pending.length*2);
+				}pending[pendingCount] = secondChild;
+				pending[pendingCount+1] = otherEnd(firstChild, node);
+				pending[pendingCount+2] = firstChild;
+				pending[pendingCount+3] = node;
+				pendingCount += 4;
+			}
+		}return Arrays.copyOf(route, routeLength);
+	}
+	
+	/**
+	 * Returns the node at the other end of an arc
+	 * @param arc The arc id
+	 * @param node One end of the arc
+	 * @return The other end of the arc
+	 */
+	private int otherEnd(int arc, int node){
+		if(arcStartNodes[arc] == node){
+			return arcEndNodes[arc];
+		}return arcStartNodes[arc];
+	}
+	
+	/**
+	 * Prices every arc for the travel times, visiting the nodes in rank order so the arcs below each node are final
+	 * before they are used, then chooses the arcs searches use
+	 * Each arc starts at the fastest road it joins, then every pair of arcs from a node to two more important
+	 * neighbours is a path the arc joining the neighbours may take instead
+	 * @param travelTimes The travel time of each edge in the graph
+	 * @return The time spent customizing the hierarchy in nanoseconds
+	 */
+	private long price(double[] travelTimes){
+		long priceStart = System.nanoTime();
+		int[] neighbourArcs = new int[nodeCount];
+		int node, neighbour, lowerArc, upperArc, arc;
+		double cost;
+		
+		Arrays.fill(arcCosts, Double.POSITIVE_INFINITY);
+		Arrays.fill(firstChildArcs, -1);
+		Arrays.fill(secondChildArcs, -1);
+		for(int edge=0;edge<edgeArcs.length;edge++){
+			arc = edgeArcs[edge];
+			if(arc != -1 && travelTimes[edge] < arcCosts[arc]){
+				arcCosts[arc] = travelTimes[edge];
+			}
+		}
+		for(int rank=0;rank<nodeCount;rank++){
+			node = rankedNodes[rank];
+			for(int i=upwardOffsets[node];i<upwardOffsets[node+1];i++){
+				lowerArc = upwardArcs[i];
+				neighbour = upwardNodes[i];
+				//Every more important neighbour of the node is joined to the neighbour by an upward arc of the neighbour
+				for(int j=upwardOffsets[neighbour];j<upwardOffsets[neighbour+1];j++){
+					neighbourArcs[upwardNodes[j]] = upwardArcs[j];
+				}
+				for(int j=upwardOffsets[node];j<upwardOffsets[node+1];j++){
+					upperArc = upwardArcs[j];
+					if(ranks[upwardNodes[j]] <= ranks[neighbour]){
+						continue;
+					}
+					arc = neighbourArcs[upwardNodes[j]];
+					cost = arcCosts[lowerArc] + arcCosts[upperArc];
+					if(cost < arcCosts[arc]){
+						arcCosts[arc] = cost;
+						if(arcStartNodes[arc] == neighbour){
+							firstChildArcs[arc] = lowerArc;
+							secondChildArcs[arc] = upperArc;
+						}else{
+							firstChildArcs[arc] = upperArc;
+							secondChildArcs[arc] = lowerArc;
+						}
+					}
+				}
+			}
+		}
+		chooseSearchArcs(neighbourArcs);
+		return System.nanoTime() - priceStart;
+	}
+	
+	/**
+	 * Finds the fastest path along every arc through nodes of any importance and keeps only the arcs that are
+	 * themselves a fastest path for searches, a search that reaches a node along a path another arc beats
+	 * reaches it along the faster path through more important nodes instead
+	 * Nodes are visited from the most important down so the arcs above each node already hold their fastest path,
+	 * the fastest path along an arc from a node leaves it along one of its priced arcs and then takes the fastest
+	 * path from that neighbour
+	 * @param neighbourArcs Working space with an entry for every node
+	 */
+	private void chooseSearchArcs(int[] neighbourArcs){
+		double[] fastestCosts = arcCosts.clone();
+		int[] marks = new int[nodeCount];
+		int node, neighbour, lowerArc, upperArc, arc, count = 0;
+		
+		Arrays.fill(marks, -1);
+		for(int rank=nodeCount-1;rank>=0;rank--){
+			node = rankedNodes[rank];
+			for(int i=upwardOffsets[node];i<upwardOffsets[node+1];i++){
+				neighbourArcs[upwardNodes[i]] = upwardArcs[i];
+				marks[upwardNodes[i]] = node;
+			}
+			//Each pair of more important neighbours is joined by an upward arc of the less important of the two
+			for(int i=upwardOffsets[node];i<upwardOffsets[node+1];i++){
+				lowerArc = upwardArcs[i];
+				neighbour = upwardNodes[i];
+				for(int j=upwardOffsets[neighbour];j<upwardOffsets[neighbour+1];j++){
+					arc = upwardArcs[j];
+					if(marks[upwardNodes[j]] != node){
+						continue;
+					}
+					upperArc = neighbourArcs[upwardNodes[j]];
+					fastestCosts[lowerArc] = Math.min(fastestCosts[lowerArc], arcCosts[upperArc] + fastestCosts[arc]);
+					fastestCosts[upperArc] = Math.min(fastestCosts[upperArc], arcCosts[lowerArc] + fastestCosts[arc]);
+				}
+			}
+		}
+		for(node=0;node<nodeCount;node++){
+			searchOffsets[node] = count;
+			for(int i=upwardOffsets[node];i<upwardOffsets[node+1];i++){
+				arc = upwardArcs[i];
+				if(arcCosts[arc] < Double.POSITIVE_INFINITY && arcCosts[arc] <= fastestCosts[arc]){
+					searchArcs[count] = arc;
+					count++;
+				}
+			}
+		}searchOffsets[nodeCount] = count;
+	}
+	
+	/**
+	 * Adds an arc between the ends of every road that joins two different intersections, one arc for each pair
+	 * @param compactGraph The graph the hierarchy is built over
+	 */
+	private void addOriginalRoads(GraphStorage compactGraph){
+		int startNode, endNode, arc;
+		
+		adjacency = new int[nodeCount][];
+		adjacencySizes = new int[nodeCount];
+		buildStartNodes = new int[INITIALARCCAPACITY];
+		buildEndNodes = new int[INITIALARCCAPACITY];
+		buildArcCount = 0;
+		
+		for(int edge=0;edge<edgeArcs.length;edge++){
+			startNode = compactGraph.getEdgeStartNode(edge);
+			endNode = compactGraph.getEdgeEndNode(edge);
+			if(endNode == -1 || endNode == startNode){
+				edgeArcs[edge] = -1;
+				continue;
+			}
+			arc = findArc(startNode, endNode);
+			if(arc == -1){
+				arc = buildArcCount;
+				addArc(startNode, endNode);
+			}edgeArcs[edge] = arc;
+		}
+	}
+	
+	/**
+	 * Returns the arc joining two nodes while building the hierarchy
+	 * @param startNode One end of the arc
+	 * @param endNode The other end of the arc
+	 * @return The arc id, or -1 if the nodes are not joined
+	 */
+	private int findArc(int startNode, int endNode){
+		int arc;
+		for(int i=0;i<adjacencySizes[startNode];i++){
+			arc = adjacency[startNode][i];
+			if(buildStartNodes[arc] == endNode || buildEndNodes[arc] == endNode){
+				return arc;
+			}
+		}return -1;
+	}
+	
+	/**
+	 * Returns the node at the other end of an arc while building the hierarchy
+	 * @param arc The arc id
+	 * @param node One end of the arc
+	 * @return The other end of the arc
+	 */
+	private int otherBuildEnd(int arc, int node){
+		if(buildStartNodes[arc] == node){
+			return buildEndNodes[arc];
+		}return buildStartNodes[arc];
+	}
+	
+	/**
+	 * Adds an arc between two nodes to the hierarchy being built
+	 * @param startNode One end of the arc
+	 * @param endNode The other end of the arc
+	 */
+	private void addArc(int startNode, int endNode){
+		if(buildArcCount == buildStartNodes.length){
+			buildStartNodes = Arrays.copyOf(buildStartNodes, buildArcCount*2);
+			buildEndNodes = Arrays.copyOf(buildEndNodes, buildArcCount*2);
+		}buildStartNodes[buildArcCount] = startNode;
+		buildEndNodes[buildArcCount] = endNode;
+		addAdjacentArc(startNode, buildArcCount);
+		addAdjacentArc(endNode, buildArcCount);
+		buildArcCount++;
+	}
+	
+	/**
+	 * Records an arc as touching the node
+	 * @param node The node id
+	 * @param arc The arc id
+	 */
+	private void addAdjacentArc(int node, int arc){
+		if(adjacency[node] == null){
+			adjacency[node] = new int[4];
+		}else if(adjacencySizes[node] == adjacency[node].length){
+			adjacency[node] = Arrays.copyOf(adjacency[node], adjacencySizes[node]*2);
+		}adjacency[node][adjacencySizes[node]] = arc;
+		adjacencySizes[node]++;
+	}
+	
+	/**
+	 * Ranks the nodes of one part of the map by nested dissection, splitting the part in half at the median along
+	 * its longer side and ranking each half before the separator, the nodes of one half with roads to the other half
+	 * Once the separator is ranked above both halves no search through the hierarchy crosses between them below it
+	 * @param compactGraph The graph the hierarchy is built over
+	 * @param nodes The nodes being ranked, the nodes of the part are reordered in place
+	 * @param start The index of the first node of the part
+	 * @param end The index after the last node of the part
+	 * @param nextRank The rank given to the first node ranked
+	 * @return The rank after the last node ranked
+	 */
+	private int dissect(GraphStorage compactGraph, int[] nodes, int start, int end, int nextRank){
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		double median;
+		boolean splitX;
+		int firstSide, secondSide, separatorSide, otherSide, separator;
+		int middle, firstBoundary = 0, secondBoundary = 0, firstEnd, secondEnd, count, node;
+		
+		if(end - start <= DISSECTIONLEAFSIZE){
+			return rankNodes(nodes, start, end, nextRank);
+		}
+		for(int i=start;i<end;i++){
+			minX = Math.min(minX, compactGraph.getNodeX(nodes[i]));
+			maxX = Math.max(maxX, compactGraph.getNodeX(nodes[i]));
+			minY = Math.min(minY, compactGraph.getNodeY(nodes[i]));
+			maxY = Math.max(maxY, compactGraph.getNodeY(nodes[i]));
+		}
+		splitX = maxX - minX >= maxY - minY;
+		for(int i=start;i<end;i++){
+			coordinates[i-start] = splitX ? compactGraph.getNodeX(nodes[i]) : compactGraph.getNodeY(nodes[i]);
+		}Arrays.sort(coordinates, 0, end-start);
+		median = coordinates[(end-start)/2];
+		
+		//Move the nodes before the median to the front of the part
+		middle = start;
+		for(int i=start;i<end;i++){
+			if((splitX ? compactGraph.getNodeX(nodes[i]) : compactGraph.getNodeY(nodes[i])) < median){
+				node = nodes[i];
+				nodes[i] = nodes[middle];
+				nodes[middle] = node;
+				middle++;
+			}
+		}if(middle == start){
+			//Over half of the part is at the same position along its longer side so it cannot be split
+			return rankNodes(nodes, start, end, nextRank);
+		}
+		
+		//The separator is taken from the half with fewer nodes that have roads to the other half
+		firstSide = nextSide;
+		secondSide = nextSide+1;
+		separator = nextSide+2;
+		nextSide += 3;
+		for(int i=start;i<end;i++){
+			sides[nodes[i]] = i < middle ? firstSide : secondSide;
+		}for(int i=start;i<end;i++){
+			if(hasNeighbourOn(nodes[i], i < middle ? secondSide : firstSide)){
+				if(i < middle){
+					firstBoundary++;
+				}else{
+					secondBoundary++;
+				}
+			}
+		}
+		separatorSide = firstBoundary <= secondBoundary ? firstSide : secondSide;
+		otherSide = firstBoundary <= secondBoundary ? secondSide : firstSide;
+		for(int i=start;i<end;i++){
+			if(sides[nodes[i]] == separatorSide && hasNeighbourOn(nodes[i], otherSide)){
+				sides[nodes[i]] = separator;
+			}
+		}
+		
+		//Order the part as the first half, the second half and then the separator
+		count = 0;
+		for(int i=start;i<middle;i++){
+			if(sides[nodes[i]] != separator){
+				dissectedNodes[count] = nodes[i];
+				count++;
+			}
+		}firstEnd = start + count;
+		for(int i=middle;i<end;i++){
+			if(sides[nodes[i]] != separator){
+				dissectedNodes[count] = nodes[i];
+				count++;
+			}
+		}secondEnd = start + count;
+		for(int i=start;i<end;i++){
+			if(sides[nodes[i]] == separator){
+				dissectedNodes[count] = nodes[i];
+				count++;
+			}
+		}System.arraycopy(dissectedNodes, 0, nodes, start, end-start);
+		
+		nextRank = dissect(compactGraph, nodes, start, firstEnd, nextRank);
+		nextRank = dissect(compactGraph, nodes, firstEnd, secondEnd, nextRank);
+		return rankNodes(nodes, secondEnd, end, nextRank);
+	}
+	
+	/**
+	 * Returns whether a node has a road to a node on the given side of the split being made
+	 * @param node The node id
+	 * @param side The side of the split
+	 * @return True if any neighbour of the node is on the side
+	 */
+	private boolean hasNeighbourOn(int node, int side){
+		for(int i=0;i<adjacencySizes[node];i++){
+			if(sides[otherBuildEnd(adjacency[node][i], node)] == side){
+				return true;
+			}
+		}return false;
+	}
+	
+	/**
+	 * Gives the nodes of a part of the map consecutive ranks in the order they are held
+	 * @param nodes The nodes being ranked
+	 * @param start The index of the first node to rank
+	 * @param end The index after the last node to rank
+	 * @param nextRank The rank given to the first node
+	 * @return The rank after the last node ranked
+	 */
+	private int rankNodes(int[] nodes, int start, int end, int nextRank){
+		for(int i=start;i<end;i++){
+			ranks[nodes[i]] = nextRank;
+			nextRank++;
+		}return nextRank;
+	}
+	
+	/**
+	 * Contracts the nodes in rank order, joining every pair of more important neighbours of each node that are not
+	 * already joined, so a fastest path between any two nodes can be found by only searching upwards from both
+	 * whatever the travel times
+	 */
+	private void contractNodes(){
+		int[] joined = new int[nodeCount];
+		int[] upward = new int[INITIALARCCAPACITY];
+		int node, neighbour, upwardCount;
+		
+		//A node is marked with a neighbour once it is known to be joined to that neighbour, arcs are never removed
+		Arrays.fill(joined, -1);
+		for(int rank=0;rank<nodeCount;rank++){
+			node = rankedNodes[rank];
+			upwardCount = 0;
+			for(int i=0;i<adjacencySizes[node];i++){
+				neighbour = otherBuildEnd(adjacency[node][i], node);
+				if(ranks[neighbour] > rank){
+					if(upwardCount == upward.length){
+						upward = Arrays.copyOf(upward, upwardCount*2);
+					}upward[upwardCount] = neighbour;
+					upwardCount++;
+				}
+			}
+			for(int i=0;i<upwardCount;i++){
+				neighbour = upward[i];
+				for(int j=0;j<adjacencySizes[neighbour];j++){
+					joined[otherBuildEnd(adjacency[neighbour][j], neighbour)] = neighbour;
+				}for(int j=i+1;j<upwardCount;j++){
+					if(joined[upward[j]] != neighbour){
+						addArc(neighbour, upward[j]);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Orders the arcs of each node that lead to more important nodes, and the node each leads to, into the upward arrays
+	 */
+	private void buildUpwardArcs(){
+		int lowerNode;
+		int[] positions;
+		
+		for(int arc=0;arc<arcCount;arc++){
+			upwardOffsets[lowerEnd(arc)+1]++;
+		}for(int node=0;node<nodeCount;node++){
+			upwardOffsets[node+1] += upwardOffsets[node];
+		}
+		positions = Arrays.copyOf(upwardOffsets, nodeCount);
+		for(int arc=0;arc<arcCount;arc++){
+			lowerNode = lowerEnd(arc);
+			upwardArcs[positions[lowerNode]] = arc;
+			upwardNodes[positions[lowerNode]] = otherEnd(arc, lowerNode);
+			positions[lowerNode]++;
+		}
+	}
+	
+	/**
+	 * Returns the less important end of an arc
+	 * @param arc The arc id
+	 * @return The end of the arc with the lower rank
+	 */
+	private int lowerEnd(int arc){
+		if(ranks[arcStartNodes[arc]] < ranks[arcEndNodes[arc]]){
+			return arcStartNodes[arc];
+		}return arcEndNodes[arc];
+	}
+}
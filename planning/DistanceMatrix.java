@@ -0,0 +1,78 @@
+package group26.planning;
+
+/**
+ * The travel distances and times from a set of starting positions to a set of destinations
+ * Each entry is for the fastest route between the pair, or infinity if the destination cannot be reached
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class DistanceMatrix {
+	//The distance along the fastest route from each source to each destination
+	private final double[][] distances;
+	//The expected travel time along the fastest route from each source to each destination
+	private final double[][] etas;
+	
+	/**
+	 * Constructor for the distance matrix
+	 * @param distances The distances indexed by source then destination
+	 * @param etas The travel times indexed by source then destination
+	 */
+	DistanceMatrix(double[][] distances, double[][] etas){
+		this.distances = distances;
+		this.etas = etas;
+	}
+	
+	/**
+	 * Returns the number of starting positions
+	 * @return The number of rows in the matrix
+	 */
+	public int getSourceCount(){
+		return distances.length;
+	}
+	
+	/**
+	 * Returns the number of destinations
+	 * @return The number of columns in the matrix
+	 */
+	public int getDestinationCount(){
+		if(distances.length == 0){
+			return 0;
+		}return distances[0].length;
+	}
+	
+	/**
+	 * Returns the distance along the fastest route from a source to a destination
+	 * @param source The index of the starting position
+	 * @param destination The index of the destination
+	 * @return The distance, or infinity if the destination cannot be reached
+	 */
+	public double getDistance(int source, int destination){
+		return distances[source][destination];
+	}
+	
+	/**
+	 * Returns the expected travel time from a source to a destination
+	 * @param source The index of the starting position
+	 * @param destination The index of the destination
+	 * @return The travel time in seconds, or infinity if the destination cannot be reached
+	 */
+	public double getEta(int source, int destination){
+		return etas[source][destination];
+	}
+	
+	/**
+	 * Returns every distance in the matrix, the arrays must not be changed
+	 * @return The distances indexed by source then destination
+	 */
+	public double[][] getDistances(){
+		return distances;
+	}
+	
+	/**
+	 * Returns every travel time in the matrix, the arrays must not be changed
+	 * @return The travel times indexed by source then destination
+	 */
+	public double[][] getEtas(){
+		return etas;
+	}
+}
@@ -0,0 +1,357 @@
+package group26.planning;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.unimelb.swen30006.partc.roads.Road;
+
+/**
+ * Calculates the travel distances and times from many starting positions to many destinations at once,
+ * for dispatching cars to jobs without planning a route for every pair
+ * Each source runs one Dijkstra search over the travel times that stops once every reachable destination is settled,
+ * and the sources are searched in parallel
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class DistanceTable {
+	//The number of sources below which a search task is not split further
+	private static final int SOURCESPERTASK = 2;
+	
+	//The graph the distances are calculated on
+	private final Graph graph;
+	private final GraphStorage compactGraph;
+	//The pool the searches are run on
+	private final ForkJoinPool pool;
+	//The search state of each thread
+	private final ThreadLocal<SearchState> searchStates;
+	//The length of the route to each node reached by the search on each thread
+	private final ThreadLocal<double[]> routeLengths;
+	
+	/**
+	 * Constructor for the distance table using one thread per available processor
+	 * @param graph The graph the distances are calculated on
+	 */
+	public DistanceTable(Graph graph){
+		this(graph, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructor for the distance table
+	 * @param graph The graph the distances are calculated on
+	 * @param parallelism The number of threads the searches are run on
+	 */
+	public DistanceTable(Graph graph, int parallelism){
+		this.graph = graph;
+		this.compactGraph = graph.getCompactGraph();
+		this.pool = new ForkJoinPool(parallelism);
+		this.searchStates = new ThreadLocal<SearchState>(){
+			@Override
+			protected SearchState initialValue(){
+				return new SearchState(compactGraph.getNodeCount(), 0);
+			}
+		};
+		this.routeLengths = new ThreadLocal<double[]>(){
+			@Override
+			protected double[] initialValue(){
+				return new double[compactGraph.getNodeCount()];
+			}
+		};
+	}
+	
+	/**
+	 * Calculates the distance and travel time of the fastest route from each car to each destination
+	 * @param sourceRoads The road each car is on
+	 * @param sourcePositions The position of each car on its road
+	 * @param destinations The destinations the cars may be sent to
+	 * @return The distances and travel times indexed by car then destination
+	 */
+	public DistanceMatrix calculate(Road[] sourceRoads, Point2D.Double[] sourcePositions, Point2D.Double[] destinations){
+		double[][] distances = new double[sourceRoads.length][destinations.length];
+		double[][] etas = new double[sourceRoads.length][destinations.length];
+		DestinationIndex destinationIndex = new DestinationIndex(destinations);
+		//Read the travel times once so every search of the table uses the same times
+		double[] travelTimes = graph.getCongestionModel().getTravelTimes();
+		
+		pool.invoke(new SearchTask(sourceRoads, sourcePositions, destinationIndex, travelTimes, distances, etas, 0, sourceRoads.length));
+		return new DistanceMatrix(distances, etas);
+	}
+	
+	/**
+	 * Stops the search threads
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+	
+	/**
+	 * Searches from one car to every destination and fills in its row of the matrix
+	 * @param edge The edge the car is on
+	 * @param position The position of the car
+	 * @param destinationIndex The goal nodes of each destination
+	 * @param travelTimes The expected travel time of each road
+	 * @param distances The row of distances to fill in
+	 * @param etas The row of travel times to fill in
+	 */
+	private void search(Edge edge, Point2D.Double position, DestinationIndex destinationIndex, double[] travelTimes, double[] distances, double[] etas){
+		SearchState searchState = searchStates.get();
+		BinaryHeap openSet = searchState.getOpenSet();
+		double[] lengths = routeLengths.get();
+		int remaining = 0;
+		int component, currentNode, nextNode, arcEdge, destination;
+		double cost, length, tentativeCost, settledCost, largestEta = 0;
+		
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(etas, Double.POSITIVE_INFINITY);
+		if(edge == null){
+			return;
+		}
+		//Only wait for the destinations that can be reached from the car's part of the map
+		component = compactGraph.getComponent(edge.getStartNode().getId());
+		for(int i=0;i<destinationIndex.getDestinationCount();i++){
+			if(destinationIndex.isReachableFrom(i, component)){
+				remaining++;
+			}
+		}
+		
+		searchState.beginSearch();
+		seed(searchState, lengths, edge.getStartNode().getId(), edge, position, travelTimes);
+		if(edge.hasEndNode()){
+			seed(searchState, lengths, edge.getEndNode().getId(), edge, position, travelTimes);
+		}
+		
+		while(!openSet.isEmpty()){
+			settledCost = openSet.peekKey();
+			//Once every destination has a time no later than the closest open node none of them can improve
+			if(remaining == 0 && settledCost >= largestEta){
+				largestEta = 0;
+				for(int i=0;i<etas.length;i++){
+					if(etas[i] < Double.POSITIVE_INFINITY){
+						largestEta = Math.max(largestEta, etas[i]);
+					}
+				}if(settledCost >= largestEta){
+					break;
+				}
+			}
+			currentNode = openSet.removeMin();
+			searchState.close(currentNode);
+			cost = searchState.getCost(currentNode);
+			length = lengths[currentNode];
+			
+			//Record the destinations that can be reached from this node
+			for(int goal=destinationIndex.getFirstGoal(currentNode);goal<destinationIndex.getEndGoal(currentNode);goal++){
+				destination = destinationIndex.getGoalDestination(goal);
+				if(cost + destinationIndex.getGoalEta(goal) < etas[destination]){
+					if(etas[destination] == Double.POSITIVE_INFINITY){
+						remaining--;
+					}etas[destination] = cost + destinationIndex.getGoalEta(goal);
+					distances[destination] = length + destinationIndex.getGoalDistance(goal);
+				}
+			}
+			
+			for(int arc=compactGraph.getFirstArc(currentNode);arc<compactGraph.getEndArc(currentNode);arc++){
+				nextNode = compactGraph.getArcTarget(arc);
+				if(nextNode != -1 && !searchState.isClosed(nextNode)){
+					arcEdge = compactGraph.getArcEdge(arc);
+					tentativeCost = cost + travelTimes[arcEdge];
+					if(tentativeCost < searchState.getCost(nextNode)){
+						searchState.setCost(nextNode, tentativeCost, currentNode);
+						lengths[nextNode] = length + compactGraph.getEdgeLength(arcEdge);
+						openSet.insertOrDecrease(nextNode, tentativeCost);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Starts the search at one end of the car's road, at the cost of driving there from the car's position
+	 * @param searchState The state of the search
+	 * @param lengths The length of the route to each reached node
+	 * @param node The node at the end of the road
+	 * @param edge The edge the car is on
+	 * @param position The position of the car
+	 * @param travelTimes The expected travel time of each road
+	 */
+	private void seed(SearchState searchState, double[] lengths, int node, Edge edge, Point2D.Double position, double[] travelTimes){
+		double length = compactGraph.straightLineDistance(node, position.getX(), position.getY());
+		double cost;
+		
+		//Drive the part of the road to the node at the road's expected speed when it has one
+		if(edge.hasEndNode() && edge.getLength() > 0){
+			cost = travelTimes[edge.getId()]*Math.min(1, length/edge.getLength());
+		}else{
+			cost = length/CongestionModel.FREEFLOWSPEED;
+		}
+		searchState.setCost(node, cost, -1);
+		lengths[node] = length;
+		searchState.getOpenSet().insertOrDecrease(node, cost);
+	}
+	
+	/**
+	 * The nodes each destination can be reached from, grouped by node so a search can look them up as it settles each node
+	 */
+	private class DestinationIndex {
+		//The number of destinations
+		private final int destinationCount;
+		//The goals of each node are between its offset and the next node's offset
+		private final int[] goalOffsets;
+		//The destination of each goal and the distance and travel time from the node to the destination
+		private final int[] goalDestinations;
+		private final double[] goalDistances;
+		private final double[] goalEtas;
+		//The components each destination can be reached from, one entry per goal node
+		private final int[] destinationOffsets;
+		private final int[] destinationComponents;
+		
+		/**
+		 * Constructor for the destination index
+		 * @param destinations The destinations in the table
+		 */
+		DestinationIndex(Point2D.Double[] destinations){
+			int nodeCount = compactGraph.getNodeCount();
+			int[][] goalNodes = new int[destinations.length][];
+			int[] positions;
+			int goalCount = 0;
+			int node, goal;
+			
+			this.destinationCount = destinations.length;
+			this.goalOffsets = new int[nodeCount+1];
+			this.destinationOffsets = new int[destinations.length+1];
+			for(int i=0;i<destinations.length;i++){
+				goalNodes[i] = graph.findGoalNodes(destinations[i]);
+				for(int j=0;j<goalNodes[i].length;j++){
+					goalOffsets[goalNodes[i][j]+1]++;
+				}goalCount += goalNodes[i].length;
+				destinationOffsets[i+1] = goalCount;
+			}for(node=0;node<nodeCount;node++){
+				goalOffsets[node+1] += goalOffsets[node];
+			}
+			
+			this.goalDestinations = new int[goalCount];
+			this.goalDistances = new double[goalCount];
+			this.goalEtas = new double[goalCount];
+			this.destinationComponents = new int[goalCount];
+			positions = Arrays.copyOf(goalOffsets, nodeCount);
+			for(int i=0;i<destinations.length;i++){
+				for(int j=0;j<goalNodes[i].length;j++){
+					node = goalNodes[i][j];
+					goal = positions[node];
+					positions[node]++;
+					goalDestinations[goal] = i;
+					//The last part of the journey is estimated as a straight line at free flow speed, as in route planning
+					goalDistances[goal] = compactGraph.straightLineDistance(node, destinations[i].getX(), destinations[i].getY());
+					goalEtas[goal] = goalDistances[goal]/CongestionModel.FREEFLOWSPEED;
+					destinationComponents[destinationOffsets[i]+j] = compactGraph.getComponent(node);
+				}
+			}
+		}
+		
+		/**
+		 * Returns the number of destinations
+		 * @return The number of destinations
+		 */
+		int getDestinationCount(){
+			return destinationCount;
+		}
+		
+		/**
+		 * Returns whether the destination can be reached from the given connected component
+		 * @param destination The index of the destination
+		 * @param component The component id
+		 * @return True if one of the destination's goal nodes is in the component
+		 */
+		boolean isReachableFrom(int destination, int component){
+			for(int i=destinationOffsets[destination];i<destinationOffsets[destination+1];i++){
+				if(destinationComponents[i] == component){
+					return true;
+				}
+			}return false;
+		}
+		
+		/**
+		 * Returns the index of the first goal of the node
+		 * @param node The node id
+		 * @return The index of the first goal
+		 */
+		int getFirstGoal(int node){
+			return goalOffsets[node];
+		}
+		
+		/**
+		 * Returns the index after the last goal of the node
+		 * @param node The node id
+		 * @return The end of the node's goals
+		 */
+		int getEndGoal(int node){
+			return goalOffsets[node+1];
+		}
+		
+		/**
+		 * Returns the destination a goal reaches
+		 * @param goal The index of the goal
+		 * @return The index of the destination
+		 */
+		int getGoalDestination(int goal){
+			return goalDestinations[goal];
+		}
+		
+		/**
+		 * Returns the distance from the goal's node to its destination
+		 * @param goal The index of the goal
+		 * @return The distance
+		 */
+		double getGoalDistance(int goal){
+			return goalDistances[goal];
+		}
+		
+		/**
+		 * Returns the travel time from the goal's node to its destination
+		 * @param goal The index of the goal
+		 * @return The travel time
+		 */
+		double getGoalEta(int goal){
+			return goalEtas[goal];
+		}
+	}
+	
+	/**
+	 * Searches from a range of cars, splitting the range in half until it is small enough
+	 */
+	private class SearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Road[] sourceRoads;
+		private final Point2D.Double[] sourcePositions;
+		private final DestinationIndex destinationIndex;
+		private final double[] travelTimes;
+		private final double[][] distances, etas;
+		private final int start, end;
+		
+		private SearchTask(Road[] sourceRoads, Point2D.Double[] sourcePositions, DestinationIndex destinationIndex, double[] travelTimes,
+				double[][] distances, double[][] etas, int start, int end){
+			this.sourceRoads = sourceRoads;
+			this.sourcePositions = sourcePositions;
+			this.destinationIndex = destinationIndex;
+			this.travelTimes = travelTimes;
+			this.distances = distances;
+			this.etas = etas;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute(){
+			int middle;
+			if(end-start <= SOURCESPERTASK){
+				for(int i=start;i<end;i++){
+					search(graph.getEdge(sourceRoads[i]), sourcePositions[i], destinationIndex, travelTimes, distances[i], etas[i]);
+				}
+			}else{
+				middle = (start+end)/2;
+				invokeAll(new SearchTask(sourceRoads, sourcePositions, destinationIndex, travelTimes, distances, etas, start, middle),
+						new SearchTask(sourceRoads, sourcePositions, destinationIndex, travelTimes, distances, etas, middle, end));
+			}
+		}
+	}
+}
@@ -11,28 +11,46 @@ import com.unimelb.swen30006.partc.roads.Road;
  */
 public class Edge {
 	//The allowable distance a road may be from the destination to consider having reached it
-	private final int ALLOWEDDISTANCEFROMDESTINATION = 50;
+	static final int ALLOWEDDISTANCEFROMDESTINATION = 50;
+	//The index of the edge in the compact graph
+	private final int id;
 	//The node the edge starts at
 	private Node startNode;
 	//The node the edge ends at if it has a final intersection
 	private Node endNode;
 	//The position the edge ends at if it has no final intersection
 	private Point2D.Double endPosition;
+	//The bounding box of the road, calculated once the graph is built
+	private double minX, maxX, minY, maxY;
+	//The length of the road between its start and end intersections
+	private double length;
+	//Indicates whether the road runs east to west rather than north to south
+	private boolean horizontal;
 	
 	/**
 	 * Constructor for the edge class
 	 * @param startNode The node the edge starts from
+	 * @param id The index of the edge in the compact graph
 	 */
-	Edge(Node startNode){
+	Edge(Node startNode, int id){
+		this.id = id;
 		this.startNode = startNode;
 		endNode = null;
 	}
 	
+	/**
+	 * Returns the index of the edge in the compact graph
+	 * @return The id of the edge
+	 */
+	public int getId(){
+		return this.id;
+	}
+	
 	/**
 	 * Sets the end node
 	 * @param endNode The node the road ends at
 	 */
-	public void setEndNode(Node endNode){
+	void setEndNode(Node endNode){
 		this.endNode = endNode;
 	}
 	
@@ -45,7 +63,7 @@ public class Edge {
 		if(this.startNode == startNode){
 			return endNode;
 		}else if(this.endNode == startNode){
-			return startNode;
+			return this.startNode;
 		}else{
 			System.out.println("Start node not recognised");
 			return null;
@@ -68,6 +86,55 @@ public class Edge {
 		return startNode;
 	}
 	
+	/**
+	 * Returns the length of the road between its start and end intersections
+	 * @return The length of the road, or infinity if the road has no end node
+	 */
+	public double getLength(){
+		return length;
+	}
+	
+	/**
+	 * Returns whether the road runs east to west
+	 * @return True if the road is horizontal, false if it is vertical
+	 */
+	public boolean isHorizontal(){
+		return horizontal;
+	}
+	
+	/**
+	 * Calculates the bounding box, length and orientation of the road
+	 * Must be called once the end node or end position of the edge has been set
+	 */
+	void calculateGeometry(){
+		double startX = startNode.getPosition().getX();
+		double startY = startNode.getPosition().getY();
+		double endX, endY;
+		
+		if(endNode == null){
+			endX = endPosition.getX();
+			endY = endPosition.getY();
+			length = Double.POSITIVE_INFINITY;
+		}else{
+			endX = endNode.getPosition().getX();
+			endY = endNode.getPosition().getY();
+			length = Math.sqrt(((endX-startX)*(endX-startX))+((endY-startY)*(endY-startY)));
+		}
+		minX = Math.min(startX, endX);
+		maxX = Math.max(startX, endX);
+		minY = Math.min(startY, endY);
+		maxY = Math.max(startY, endY);
+		horizontal = (maxX-minX) >= (maxY-minY);
+	}
+	
+	/**
+	 * Returns the position the edge ends at if it has no end node
+	 * @return The end position, or null if the edge has an end node
+	 */
+	public Point2D.Double getEndPosition(){
+		return endPosition;
+	}
+	
 	/**
 	 * Returns whether the edge has an end node
 	 * @return Boolean indicating the existence of an end node
@@ -84,13 +151,13 @@ public class Edge {
 	 * Sets the end position of the edge if it does not have an end node based on the road it represents
 	 * @param road The road the edge represents
 	 */
-	public void setEndPosition(Road road){
+	void setEndPosition(Road road){
 		//Checks which of the road positions is the one already connected to start node
 		if(connectedToIntersection(road.getEndPos())){
 			//Sets the end position to the unconnected end
 			this.endPosition = road.getStartPos();
 		}else if(connectedToIntersection(road.getStartPos())){
-			this.endPosition = road.getStartPos();
+			this.endPosition = road.getEndPos();
 		}else{
 			System.out.println("Fatal error, map invalid");
 			System.out.println("Road with start position:("+road.getStartPos().x+","+road.getStartPos().getX()+") end position:("+road.getEndPos().x+","+road.getEndPos().getX()+")");
@@ -99,6 +166,15 @@ public class Edge {
 		}
 	}
 	
+	/**
+	 * Sets the end position of the edge if it does not have an end node to a position already known to be the
+	 * unconnected end of the road
+	 * @param endPosition The position of the unconnected end of the road
+	 */
+	void setEndPosition(Point2D.Double endPosition){
+		this.endPosition = endPosition;
+	}
+	
 	/**
 	 * Returns whether there is a point on the road within the given range
 	 * for reaching the destination
@@ -106,91 +182,35 @@ public class Edge {
 	 * @return Boolean indicating if the destination is on the road
 	 */
 	public boolean destinationOnRoad(Point2D.Double destination){
-		double distance;		
-		distance = closestPointToDestination(destination);
-		if(distance < ALLOWEDDISTANCEFROMDESTINATION){
-			return true;
-		}else{
-			return false;
-		}
+		return destinationOnRoad(destination.x, destination.y);
 	}
 	
 	/**
-	 * Calculates the closest point to the destination on the road and the distance
+	 * Returns whether there is a point on the road within the given range
+	 * for reaching the destination
+	 * @param destinationX The x position of the destination
+	 * @param destinationY The y position of the destination
+	 * @return Boolean indicating if the destination is on the road
+	 */
+	public boolean destinationOnRoad(double destinationX, double destinationY){
+		return squaredDistanceToDestination(destinationX, destinationY) < ALLOWEDDISTANCEFROMDESTINATION*ALLOWEDDISTANCEFROMDESTINATION;
+	}
+	
+	/**
+	 * Calculates the closest point to the destination on the road's bounding box and the squared distance
 	 * from that point to the destination
-	 * @param destination The destination to be reached
-	 * @return The distance from the destination at the closest point on the road
+	 * @param destinationX The x position of the destination
+	 * @param destinationY The y position of the destination
+	 * @return The squared distance from the destination at the closest point on the road
 	 */
-	private double closestPointToDestination(Point2D.Double destination){
-		double xRangeStart, xRangeEnd;
-		double yRangeStart, yRangeEnd;
-		double straightLineDistance;
-		double xDif, yDif;
-		double closestY, closestX;
-		
-		//If road has an end node then calculate the start and end of the road based on that
-		if(endNode == null){
-			//Determine which is the lowest and which is the highest position of the road for each axis
-			if(this.startNode.getPosition().getX() > this.endPosition.getX()){
-				xRangeEnd = this.startNode.getPosition().getX();
-				xRangeStart = this.endPosition.getX();
-			}else{
-				xRangeStart = this.startNode.getPosition().getX();
-				xRangeEnd = this.endPosition.getX();
-			}if(this.startNode.getPosition().getY() > this.endPosition.getY()){
-				yRangeEnd = this.startNode.getPosition().getY();
-				yRangeStart = this.endPosition.getY();
-			}else{
-				yRangeStart = this.startNode.getPosition().getY();
-				yRangeEnd = this.endPosition.getY();
-			}
-		}else{
-			//Otherwise use the final position of the road
-			if(this.startNode.getPosition().getX() > this.endNode.getPosition().getX()){
-				xRangeEnd = this.startNode.getPosition().getX();
-				xRangeStart = this.endNode.getPosition().getX();
-			}else{
-				xRangeStart = this.startNode.getPosition().getX();
-				xRangeEnd = this.endNode.getPosition().getX();
-			}if(this.startNode.getPosition().getY() > this.endNode.getPosition().getY()){
-				yRangeEnd = this.startNode.getPosition().getY();
-				yRangeStart = this.endNode.getPosition().getY();
-			}else{
-				yRangeStart = this.startNode.getPosition().getY();
-				yRangeEnd = this.endNode.getPosition().getY();
-			}
-		}
-		
-		//Determine the closest x position on the road
-		if(destination.getX()>xRangeStart){
-			if(destination.getX()<xRangeEnd){
-				closestX = destination.getX();
-			}else{
-				closestX = xRangeEnd;
-			}
-		}else{
-			closestX = xRangeStart;
-		}
-		
-		//Determine the closest y position on the road
-		if(destination.getY()>yRangeStart){
-			if(destination.getY()<yRangeEnd){
-				closestY = destination.getY();
-			}else{
-				closestY = yRangeEnd;
-			}
-		}else{
-			closestY = yRangeStart;
-		}
-		
-		//Determine the distance from the closest position to the destination for each axis
-		xDif = destination.getX() - closestX;
-		yDif = destination.getY() - closestY;
-		
-		//Calculate the straight line distance to the destination
-		straightLineDistance = Math.sqrt((xDif*xDif)+(yDif*yDif));
-		return straightLineDistance;
+	private double squaredDistanceToDestination(double destinationX, double destinationY){
+		//Determine the closest position on the road for each axis
+		double closestX = Math.min(Math.max(destinationX, minX), maxX);
+		double closestY = Math.min(Math.max(destinationY, minY), maxY);
+		double xDif = destinationX - closestX;
+		double yDif = destinationY - closestY;
 		
+		return (xDif*xDif)+(yDif*yDif);
 	}
 	
 	/**
@@ -199,12 +219,10 @@ public class Edge {
 	 * @return True if connected to the start intersection, false if not
 	 */
 	private boolean connectedToIntersection(Point2D.Double position){
-		Double xDif, yDif;
+		double xDif, yDif;
 		
-		xDif = this.startNode.getPosition().getX() - position.getX();
-		xDif = Math.abs(xDif);
-		yDif = this.startNode.getPosition().getY() - position.getY();
-		yDif = Math.abs(yDif);
+		xDif = Math.abs(this.startNode.getPosition().x - position.x);
+		yDif = Math.abs(this.startNode.getPosition().y - position.y);
 		
 		if(xDif <= this.startNode.getWidth()){
 			if(yDif <= this.startNode.getLength()){
@@ -0,0 +1,185 @@
+package group26.planning;
+
+/**
+ * A uniform grid over the roads of the graph used to find the roads close to a destination
+ * Each cell lists every road that passes within the allowed distance from the destination of the cell,
+ * so a destination only needs to be checked against the roads in its own cell
+ * The cells are sized so there are about as many cells as roads, so widely spread maps do not need huge grids
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class EdgeGridIndex {
+	//The number of cells the grid aims for per road
+	private static final double CELLSPERROAD = 1;
+	//The most cells the grid may have however widely spread the roads are
+	private static final long MAXIMUMCELLS = 1L << 24;
+	
+	//The size of each cell, never less than the distance a road may be from the destination
+	private final double cellSize;
+	//The position of the corner of the grid
+	private final double minX, minY;
+	//The number of cells along each axis
+	private final int columns, rows;
+	//The first road of each cell, the roads of cell i run from cellOffsets[i] up to cellOffsets[i+1]
+	private final int[] cellOffsets;
+	//The edge ids in each cell
+	private final int[] cellEdges;
+	
+	/**
+	 * Constructor for the grid, places each edge in every cell within the given distance of the road
+	 * @param compactGraph The graph containing the roads
+	 * @param reachDistance The distance a road may be from a destination to reach it
+	 */
+	public EdgeGridIndex(GraphStorage compactGraph, double reachDistance){
+		int edgeCount = compactGraph.getEdgeCount();
+		double[] edgeBounds = new double[edgeCount*4];
+		double boundsMinX = Double.POSITIVE_INFINITY, boundsMinY = Double.POSITIVE_INFINITY;
+		double boundsMaxX = Double.NEGATIVE_INFINITY, boundsMaxY = Double.NEGATIVE_INFINITY;
+		int[] cellFill;
+		int startNode;
+		double width, height, size;
+		
+		//Find the area around each road that is close enough to reach it
+		for(int edge=0;edge<edgeCount;edge++){
+			startNode = compactGraph.getEdgeStartNode(edge);
+			edgeBounds[edge*4] = Math.min(compactGraph.getNodeX(startNode), compactGraph.getEdgeEndX(edge)) - reachDistance;
+			edgeBounds[(edge*4)+1] = Math.min(compactGraph.getNodeY(startNode), compactGraph.getEdgeEndY(edge)) - reachDistance;
+			edgeBounds[(edge*4)+2] = Math.max(compactGraph.getNodeX(startNode), compactGraph.getEdgeEndX(edge)) + reachDistance;
+			edgeBounds[(edge*4)+3] = Math.max(compactGraph.getNodeY(startNode), compactGraph.getEdgeEndY(edge)) + reachDistance;
+			boundsMinX = Math.min(boundsMinX, edgeBounds[edge*4]);
+			boundsMinY = Math.min(boundsMinY, edgeBounds[(edge*4)+1]);
+			boundsMaxX = Math.max(boundsMaxX, edgeBounds[(edge*4)+2]);
+			boundsMaxY = Math.max(boundsMaxY, edgeBounds[(edge*4)+3]);
+		}
+		
+		if(edgeCount == 0){
+			this.cellSize = reachDistance;
+			this.minX = 0;
+			this.minY = 0;
+			this.columns = 0;
+			this.rows = 0;
+			this.cellOffsets = new int[1];
+			this.cellEdges = new int[0];
+			return;
+		}
+		//Size the cells from the area covered by each road, growing them until the cell count is within the limit
+		width = boundsMaxX-boundsMinX;
+		height = boundsMaxY-boundsMinY;
+		size = Math.max(reachDistance, Math.sqrt((width*height)/(edgeCount*CELLSPERROAD)));
+		while(cellCount(width, height, size) > MAXIMUMCELLS){
+			size *= 2;
+		}
+		this.cellSize = size;
+		this.minX = boundsMinX;
+		this.minY = boundsMinY;
+		this.columns = (int)(width/cellSize) + 1;
+		this.rows = (int)(height/cellSize) + 1;
+		this.cellOffsets = new int[(columns*rows)+1];
+		
+		//Count the roads in each cell, then place them
+		for(int edge=0;edge<edgeCount;edge++){
+			for(int row=row(edgeBounds[(edge*4)+1]);row<=row(edgeBounds[(edge*4)+3]);row++){
+				for(int column=column(edgeBounds[edge*4]);column<=column(edgeBounds[(edge*4)+2]);column++){
+					cellOffsets[(row*columns)+column+1]++;
+				}
+			}
+		}for(int cell=0;cell<columns*rows;cell++){
+			cellOffsets[cell+1] += cellOffsets[cell];
+		}
+		this.cellEdges = new int[cellOffsets[columns*rows]];
+		cellFill = new int[columns*rows];
+		for(int edge=0;edge<edgeCount;edge++){
+			for(int row=row(edgeBounds[(edge*4)+1]);row<=row(edgeBounds[(edge*4)+3]);row++){
+				for(int column=column(edgeBounds[edge*4]);column<=column(edgeBounds[(edge*4)+2]);column++){
+					cellEdges[cellOffsets[(row*columns)+column] + cellFill[(row*columns)+column]] = edge;
+					cellFill[(row*columns)+column]++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of cells a grid over the given area has
+	 * @param width The width of the area
+	 * @param height The height of the area
+	 * @param size The size of each cell
+	 * @return The number of cells, calculated without overflowing
+	 */
+	private static long cellCount(double width, double height, double size){
+		long columnCount = (long)(width/size) + 1;
+		long rowCount = (long)(height/size) + 1;
+		if(columnCount > MAXIMUMCELLS || rowCount > MAXIMUMCELLS){
+			return Long.MAX_VALUE;
+		}return columnCount*rowCount;
+	}
+	
+	/**
+	 * Returns the first road of the cell containing the position
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The index into the cell roads of the first road, equal to the end if the position is outside the grid
+	 */
+	public int getFirstCandidate(double x, double y){
+		int cell = cell(x, y);
+		if(cell == -1){
+			return 0;
+		}return cellOffsets[cell];
+	}
+	
+	/**
+	 * Returns the index after the last road of the cell containing the position
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The index into the cell roads one past the last road, 0 if the position is outside the grid
+	 */
+	public int getEndCandidate(double x, double y){
+		int cell = cell(x, y);
+		if(cell == -1){
+			return 0;
+		}return cellOffsets[cell+1];
+	}
+	
+	/**
+	 * Returns the road at the given index into the cell roads
+	 * @param candidate The index into the cell roads
+	 * @return The edge id
+	 */
+	public int getCandidateEdge(int candidate){
+		return cellEdges[candidate];
+	}
+	
+	/**
+	 * Returns the cell containing the position
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The cell index, or -1 if the position is outside the grid
+	 */
+	private int cell(double x, double y){
+		int column, row;
+		if(x < minX || y < minY){
+			return -1;
+		}column = (int)((x-minX)/cellSize);
+		row = (int)((y-minY)/cellSize);
+		if(column >= columns || row >= rows){
+			return -1;
+		}return (row*columns)+column;
+	}
+	
+	/**
+	 * Returns the column containing the x position, limited to the grid
+	 * @param x The x position
+	 * @return The column index
+	 */
+	private int column(double x){
+		return Math.min(columns-1, Math.max(0, (int)((x-minX)/cellSize)));
+	}
+	
+	/**
+	 * Returns the row containing the y position, limited to the grid
+	 * @param y The y position
+	 * @return The row index
+	 */
+	private int row(double y){
+		return Math.min(rows-1, Math.max(0, (int)((y-minY)/cellSize)));
+	}
+}
@@ -0,0 +1,190 @@
+package group26.planning;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Estimates how long the rest of a journey will take, learned online from the time cars take to travel between
+ * intersections
+ * A road takes its moving time from the congestion model scaled by the speed cars actually cruise at, each
+ * intersection adds the time cars wait at its traffic lights, and each turn adds the time taken to turn
+ * The estimates are shared by every car in the world and may be reported by many cars at once
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class EtaModel {
+	//The weight given to each new observation in the averages
+	private static final double SMOOTHING = 0.1;
+	//Observed speeds outside this range are treated as measurement errors
+	private static final double MINIMUMSPEED = 1;
+	private static final double MAXIMUMSPEED = 4*CongestionModel.FREEFLOWSPEED;
+	//The longest turn delay learned from a single observation, in seconds
+	private static final double MAXIMUMTURNDELAY = 30;
+	
+	//Specifies the turn a car makes at an intersection, hook turns are the turns across the oncoming traffic
+	public enum Turn {
+		Straight, Turn, HookTurn
+	}
+	
+	//The moving time of each road given the congestion reported by the cars
+	private final CongestionModel congestionModel;
+	//The average time spent waiting at the traffic lights of each intersection, stored as the bits of a double
+	private final AtomicLongArray signalDelays;
+	//The average extra time taken by each type of turn, stored as the bits of a double
+	private final AtomicLongArray turnDelays;
+	//The average speed cars travel at along a road when not waiting at traffic lights, stored as the bits of a double
+	private final AtomicLong cruiseSpeed;
+	
+	/**
+	 * Constructor for the ETA model, cars start out expected to travel at the free flow speed without delays
+	 * @param nodeCount The number of intersections in the graph
+	 * @param congestionModel The moving time of each road given the congestion reported by the cars
+	 */
+	public EtaModel(int nodeCount, CongestionModel congestionModel){
+		this.congestionModel = congestionModel;
+		this.signalDelays = new AtomicLongArray(nodeCount);
+		this.turnDelays = new AtomicLongArray(Turn.values().length);
+		this.cruiseSpeed = new AtomicLong(Double.doubleToRawLongBits(CongestionModel.FREEFLOWSPEED));
+	}
+	
+	/**
+	 * Records the time a car took to travel along a road from one intersection to the next
+	 * Roads travelled straight on teach the cruising speed, the time left over after a turn teaches the turn delay
+	 * @param edge The edge id of the road travelled along
+	 * @param endNode The node id of the intersection reached
+	 * @param turn The turn made onto the road when leaving the previous intersection
+	 * @param travelTime The time taken from the previous intersection to this one
+	 * @param lightDwell The part of the travel time spent waiting at traffic lights
+	 */
+	public void report(int edge, int endNode, Turn turn, double travelTime, double lightDwell){
+		double movingTime = travelTime - lightDwell;
+		double freeFlowMovingTime = congestionModel.getMovingTime(edge);
+		double speed;
+		
+		smooth(signalDelays, endNode, lightDwell);
+		if(movingTime <= 0 || Double.isInfinite(freeFlowMovingTime)){
+			return;
+		}
+		if(turn == Turn.Straight){
+			speed = CongestionModel.FREEFLOWSPEED*freeFlowMovingTime/movingTime;
+			if(speed >= MINIMUMSPEED && speed <= MAXIMUMSPEED){
+				smooth(cruiseSpeed, speed);
+			}
+		}else{
+			smooth(turnDelays, turn.ordinal(), Math.min(MAXIMUMTURNDELAY, Math.max(0, movingTime - (freeFlowMovingTime*getSpeedScale()))));
+		}
+	}
+	
+	/**
+	 * Moves an average stored as the bits of a double towards an observation, may be called by many cars at once
+	 * @param averages The averages
+	 * @param index The index of the average to move
+	 * @param observation The observed value
+	 */
+	private static void smooth(AtomicLongArray averages, int index, double observation){
+		long current, updated;
+		do{
+			current = averages.get(index);
+			updated = Double.doubleToRawLongBits(smoothed(current, observation));
+		}while(!averages.compareAndSet(index, current, updated));
+	}
+	
+	/**
+	 * Moves a single average stored as the bits of a double towards an observation, may be called by many cars at once
+	 * @param average The average
+	 * @param observation The observed value
+	 */
+	private static void smooth(AtomicLong average, double observation){
+		long current, updated;
+		do{
+			current = average.get();
+			updated = Double.doubleToRawLongBits(smoothed(current, observation));
+		}while(!average.compareAndSet(current, updated));
+	}
+	
+	/**
+	 * Returns an average moved towards an observation
+	 * @param average The bits of the average
+	 * @param observation The observed value
+	 * @return The new average
+	 */
+	private static double smoothed(long average, double observation){
+		double value = Double.longBitsToDouble(average);
+		return value + (SMOOTHING*(observation - value));
+	}
+	
+	/**
+	 * Returns the speed cars travel at along a road when not waiting at traffic lights
+	 * @return The cruising speed
+	 */
+	public double getCruiseSpeed(){
+		return Double.longBitsToDouble(cruiseSpeed.get());
+	}
+	
+	/**
+	 * Returns how much longer cars take to travel along a road than the congestion model expects
+	 * @return The ratio of the free flow speed to the cruising speed
+	 */
+	public double getSpeedScale(){
+		return CongestionModel.FREEFLOWSPEED/getCruiseSpeed();
+	}
+	
+	/**
+	 * Returns the expected time to travel along the road, not counting time waiting at traffic lights
+	 * @param edge The edge id of the road
+	 * @return The expected travel time in seconds
+	 */
+	public double getRoadTime(int edge){
+		return congestionModel.getMovingTime(edge)*getSpeedScale();
+	}
+	
+	/**
+	 * Returns the expected time spent waiting at the traffic lights of the intersection
+	 * @param node The node id of the intersection
+	 * @return The expected delay in seconds
+	 */
+	public double getSignalDelay(int node){
+		return Double.longBitsToDouble(signalDelays.get(node));
+	}
+	
+	/**
+	 * Returns the expected extra time taken by a turn
+	 * @param turn The type of turn
+	 * @return The expected delay in seconds
+	 */
+	public double getTurnDelay(Turn turn){
+		return Double.longBitsToDouble(turnDelays.get(turn.ordinal()));
+	}
+	
+	/**
+	 * Returns the turn made when changing from one heading to another
+	 * @param fromAngle The heading before the turn in degrees, a multiple of 90
+	 * @param toAngle The heading after the turn in degrees, a multiple of 90
+	 * @return The type of turn
+	 */
+	public static Turn classifyTurn(int fromAngle, int toAngle){
+		int change = (((toAngle - fromAngle) % 360) + 360) % 360;
+		if(change == 0){
+			return Turn.Straight;
+		}else if(change == 270){
+			//Turning right crosses the oncoming traffic
+			return Turn.HookTurn;
+		}else{
+			return Turn.Turn;
+		}
+	}
+	
+	/**
+	 * Returns the heading of travel between two points along the axis they are furthest apart on
+	 * @param fromX The x position travelled from
+	 * @param fromY The y position travelled from
+	 * @param toX The x position travelled to
+	 * @param toY The y position travelled to
+	 * @return The heading in degrees, 0 for east, 90 for north, 180 for west and 270 for south
+	 */
+	public static int headingAngle(double fromX, double fromY, double toX, double toY){
+		if(Math.abs(toX - fromX) >= Math.abs(toY - fromY)){
+			return toX >= fromX ? 0 : 180;
+		}return toY >= fromY ? 90 : 270;
+	}
+}
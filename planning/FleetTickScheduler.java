@@ -0,0 +1,111 @@
+package group26.planning;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse;
+
+/**
+ * Updates a fleet of cars each tick, making the planning decisions of every car in parallel
+ * and then applying them to the cars one at a time in the order the cars were added
+ * Decisions only read the cars and the shared graph, and the observations they make are reported to the graph,
+ * along with the simulation time that drives its travel time refreshes, only as each decision is applied
+ * Applying the decisions in a fixed order therefore keeps the simulation deterministic regardless of how the
+ * decisions were scheduled
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class FleetTickScheduler {
+	//The number of cars below which a decision task is not split further
+	private static final int CARSPERTASK = 32;
+	
+	//The planning systems of the cars in the fleet
+	private final ArrayList<PlanningControl> cars;
+	//The pool the decisions are made on
+	private final ForkJoinPool pool;
+	
+	/**
+	 * Constructor for the scheduler using one thread per available processor
+	 */
+	public FleetTickScheduler(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructor for the scheduler
+	 * @param parallelism The number of threads decisions are made on
+	 */
+	public FleetTickScheduler(int parallelism){
+		this.cars = new ArrayList<PlanningControl>();
+		this.pool = new ForkJoinPool(parallelism);
+	}
+	
+	/**
+	 * Adds a car to the fleet, its perception results are given at the next index of each tick
+	 * @param car The planning system of the car
+	 */
+	public void addCar(PlanningControl car){
+		cars.add(car);
+	}
+	
+	/**
+	 * Returns the number of cars in the fleet
+	 * @return The number of cars
+	 */
+	public int getCarCount(){
+		return cars.size();
+	}
+	
+	/**
+	 * Updates every car in the fleet
+	 * @param results The latest perception results of each car, in the order the cars were added
+	 * @param delta The amount of time passed since the last update
+	 */
+	public void tick(PerceptionResponse[][] results, float delta){
+		//Make every decision before any car is changed
+		pool.invoke(new DecisionTask(results, delta, 0, cars.size()));
+		
+		//Apply the decisions in a fixed order
+		for(PlanningControl car : cars){
+			car.apply(delta);
+		}
+	}
+	
+	/**
+	 * Stops the decision threads
+	 */
+	public void shutdown(){
+		pool.shutdown();
+	}
+	
+	/**
+	 * Makes the decisions of a range of cars, splitting the range in half until it is small enough
+	 */
+	private class DecisionTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final PerceptionResponse[][] results;
+		private final float delta;
+		private final int start, end;
+		
+		private DecisionTask(PerceptionResponse[][] results, float delta, int start, int end){
+			this.results = results;
+			this.delta = delta;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute(){
+			int middle;
+			if(end-start <= CARSPERTASK){
+				for(int i=start;i<end;i++){
+					cars.get(i).decide(results[i], delta);
+				}
+			}else{
+				middle = (start+end)/2;
+				invokeAll(new DecisionTask(results, delta, start, middle), new DecisionTask(results, delta, middle, end));
+			}
+		}
+	}
+}
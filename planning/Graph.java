@@ -2,7 +2,9 @@ package group26.planning;
 
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.unimelb.swen30006.partc.core.World;
 import com.unimelb.swen30006.partc.roads.Intersection;
@@ -12,14 +14,56 @@ import com.unimelb.swen30006.partc.roads.Road;
 /**
  * The graph class the contains a graph of the road structure based on nodes and edges
  * Performs searches to determine the best route to destination
+ * The graph is not changed once it is built and each thread searches with its own search state,
+ * so a single graph can be shared and searched by many cars at once
  * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
  *
  */
 public class Graph {
 	//The intersections on the graph
-	HashMap<Intersection, Node> intersections;
+	private final HashMap<Intersection, Node> intersections;
 	//The roads on the graph
-	HashMap<Road, Edge> roads;
+	private final HashMap<Road, Edge> roads;
+	//The nodes and edges indexed by their id in the compact graph
+	private final Node[] nodes;
+	private final Edge[] edges;
+	//The array backed adjacency of the graph used by searches, kept on or off the heap
+	private final GraphStorage compactGraph;
+	//The roads close to each part of the map, used to find the roads that reach a destination
+	private final EdgeGridIndex edgeIndex;
+	//The search state of each thread, so searches never share visited flags
+	private final ThreadLocal<SearchState> searchStates;
+	//The state of the backward half of bidirectional searches on each thread
+	private final ThreadLocal<SearchState> backwardSearchStates;
+	//The number of routes kept by the route cache
+	private static final int ROUTECACHESIZE = 1024;
+	//Recently planned routes, shared by every car using the graph
+	private final RouteCache routeCache;
+	//Increases whenever the graph changes so routes planned before the change are not reused
+	private final AtomicInteger version;
+	//The expected travel time of each road given the congestion reported by the cars
+	private final CongestionModel congestionModel;
+	//The expected travel, traffic light and turn times learned from the cars, used to estimate arrival times
+	private final EtaModel etaModel;
+	//The traffic light phases learned from the cars, used to plan routes for the time each intersection is reached
+	private final SignalPhaseModel signalPhaseModel;
+	//The simulation time in seconds, the time the cars using the graph have been updated for
+	private volatile double simulationTime;
+	//The optional contraction hierarchy for fast long distance queries, null until it is built
+	private volatile ContractionHierarchy contractionHierarchy;
+	
+	//Specifies the search used to find a route to the destination
+	//ContractionHierarchy searches use the hierarchy once buildContractionHierarchy has been called, it is customized
+	//for the new travel times each time they are published so it always plans on the current costs, until it is
+	//built they use A* search and the route cache instead
+	public enum SearchType {
+		Greedy, AStar, ContractionHierarchy, BidirectionalDijkstra, BidirectionalAStar, TimeDependent
+	}
+	
+	//Specifies where the array backed adjacency searches run against is stored, the rest of the graph is always on the heap
+	public enum StorageType {
+		Heap, OffHeap
+	}
 	
 	/**
 	 * Constructor for the graph class, builds the graph based on the intersections
@@ -27,41 +71,245 @@ public class Graph {
 	 * @param world The world object that contains the intersections and roads
 	 */
 	public Graph(World world){
+		this(world, null, StorageType.Heap);
+	}
+	
+	/**
+	 * Constructor for the graph class, builds the graph based on the intersections obtained from the world object
+	 * Off heap storage keeps the adjacency searches run against out of the garbage collected heap, for very large maps,
+	 * the nodes, edges, edge index and travel time models stay on the heap so it only takes a part of the graph off it
+	 * @param world The world object that contains the intersections and roads
+	 * @param storageType Where to store the adjacency searches run against
+	 */
+	public Graph(World world, StorageType storageType){
+		this(world, null, storageType);
+	}
+	
+	/**
+	 * Constructor for the graph class, builds the graph based on the intersections obtained from the world object
+	 * If a snapshot of a graph built for the same world is given the roads are connected as recorded in the
+	 * snapshot rather than by checking the geometry of every road
+	 * The roads of each intersection are always added in direction order so the ids of the nodes and edges only
+	 * depend on the world, never on the order of a hash map
+	 * @param world The world object that contains the intersections and roads
+	 * @param snapshot A snapshot of the graph previously built for the world, or null to build the graph from the world
+	 * @param storageType Where to store the adjacency searches run against
+	 */
+	Graph(World world, GraphSnapshot snapshot, StorageType storageType){
 		Node tempNode;
 		Edge tempEdge;
+		Road tempRoad;
 		HashMap<Direction, Road> tempRoads;
 		Intersection[] tempIntersections;	
+		ArrayList<Edge> tempEdges;
 		
 		this.intersections = new HashMap<Intersection, Node>();
 		this.roads = new HashMap<Road, Edge>();
 		
 		tempIntersections = world.getIntersections();
-		//Add each intersection to the graph
-		for(Intersection intersection : tempIntersections){
-			tempNode = new Node(intersection);
-			this.intersections.put(intersection, tempNode);
-			tempRoads = intersection.roads;
+		this.nodes = new Node[tempIntersections.length];
+		if(snapshot != null){
+			this.edges = snapshot.connect(tempIntersections, world.getRoads(), this.nodes, this.intersections, this.roads);
+		}else{
+			tempEdges = new ArrayList<Edge>();
+			//Add each intersection to the graph
+			for(Intersection intersection : tempIntersections){
+				tempNode = new Node(intersection, this.intersections.size());
+				this.nodes[tempNode.getId()] = tempNode;
+				this.intersections.put(intersection, tempNode);
+				tempRoads = intersection.roads;
+				
+				for(Direction direction : Direction.values()){
+					tempRoad = tempRoads.get(direction);
+					if(tempRoad == null){
+						continue;
+					}
+					//For each road connected to the intersection check if already added to graph
+					if(this.roads.containsKey(tempRoad)){
+						//If already exists then set it's end node to the current intersection
+						tempEdge = roads.get(tempRoad);
+						tempEdge.setEndNode(tempNode);
+					}else{
+						//Otherwise add it to the graph
+						tempEdge= new Edge(tempNode, tempEdges.size());
+						tempEdges.add(tempEdge);
+						this.roads.put(tempRoad,  tempEdge);
+					}tempNode.addRoad(tempEdge);
+				}
+			}
 			
-			for(Road tempRoad : tempRoads.values()){
-				//For each road connected to the intersection check if already added to graph
-				if(this.roads.containsKey(tempRoad)){
-					//If already exists then set it's end node to the current intersection
-					tempEdge = roads.get(tempRoad);
-					tempEdge.setEndNode(tempNode);
-				}else{
-					//Otherwise add it to the graph
-					tempEdge= new Edge(tempNode);
-					this.roads.put(tempRoad,  tempEdge);
-				}tempNode.addRoad(tempEdge);
+			//Check all roads to update the end position of those that are not connected to an end node
+			for(Road road : this.roads.keySet()){
+				tempEdge = roads.get(road);
+				if(!tempEdge.hasEndNode()){
+					tempEdge.setEndPosition(road);
+				}tempEdge.calculateGeometry();
 			}
+			this.edges = tempEdges.toArray(new Edge[tempEdges.size()]);
 		}
 		
-		//Check all roads to update the end position of those that are not connected to an end node
-		for(Road tempRoad : this.roads.keySet()){
-			tempEdge = roads.get(tempRoad);
-			if(!tempEdge.hasEndNode()){
-				tempEdge.setEndPosition(tempRoad);
+		//Build the array backed copy of the graph once all of the roads are connected
+		if(storageType == StorageType.OffHeap){
+			this.compactGraph = new OffHeapGraph(new CompactGraph(this.nodes, this.edges));
+		}else{
+			this.compactGraph = new CompactGraph(this.nodes, this.edges);
+		}
+		this.edgeIndex = new EdgeGridIndex(compactGraph, Edge.ALLOWEDDISTANCEFROMDESTINATION);
+		this.searchStates = new ThreadLocal<SearchState>(){
+			@Override
+			protected SearchState initialValue(){
+				return new SearchState(compactGraph.getNodeCount(), compactGraph.getEdgeCount());
+			}
+		};
+		this.backwardSearchStates = new ThreadLocal<SearchState>(){
+			@Override
+			protected SearchState initialValue(){
+				return new SearchState(compactGraph.getNodeCount(), 0);
 			}
+		};
+		this.routeCache = new RouteCache(ROUTECACHESIZE);
+		this.version = new AtomicInteger();
+		this.congestionModel = new CongestionModel(compactGraph);
+		this.etaModel = new EtaModel(compactGraph.getNodeCount(), congestionModel);
+		this.signalPhaseModel = new SignalPhaseModel(compactGraph.getNodeCount());
+	}
+	
+	/**
+	 * Returns the cache of recently planned routes
+	 * @return The route cache
+	 */
+	public RouteCache getRouteCache(){
+		return routeCache;
+	}
+	
+	/**
+	 * Returns the current version of the graph
+	 * @return The number of times the graph has changed
+	 */
+	public int getVersion(){
+		return version.get();
+	}
+	
+	/**
+	 * Returns the array backed copy of the graph
+	 * @return The compact graph, on or off the heap
+	 */
+	GraphStorage getCompactGraph(){
+		return compactGraph;
+	}
+	
+	/**
+	 * Returns the node with the given id
+	 * @param id The id of the node in the compact graph
+	 * @return The node
+	 */
+	Node getNode(int id){
+		return nodes[id];
+	}
+	
+	/**
+	 * Returns the edge representing the given road
+	 * @param road The road in the simulation
+	 * @return The edge, or null if the road is not in the graph
+	 */
+	Edge getEdge(Road road){
+		return roads.get(road);
+	}
+	
+	/**
+	 * Returns the model of the expected travel time along each road
+	 * @return The congestion model
+	 */
+	public CongestionModel getCongestionModel(){
+		return congestionModel;
+	}
+	
+	/**
+	 * Returns the model used to estimate arrival times
+	 * @return The ETA model
+	 */
+	public EtaModel getEtaModel(){
+		return etaModel;
+	}
+	
+	/**
+	 * Returns the model of the traffic light phase at each intersection
+	 * @return The signal phase model
+	 */
+	public SignalPhaseModel getSignalPhaseModel(){
+		return signalPhaseModel;
+	}
+	
+	/**
+	 * Builds a contraction hierarchy for the current travel times so that contraction hierarchy searches can use it
+	 * The hierarchy is customized for every new version of the travel times when they are published, which costs
+	 * time proportional to the shortcuts of the hierarchy once per publication rather than once per search
+	 * @return The new contraction hierarchy
+	 */
+	public synchronized ContractionHierarchy buildContractionHierarchy(){
+		int graphVersion = version.get();
+		ContractionHierarchy hierarchy = new ContractionHierarchy(compactGraph, congestionModel.getTravelTimes(), graphVersion);
+		//Only publish the hierarchy if the travel times did not change while it was being built
+		if(version.get() == graphVersion){
+			contractionHierarchy = hierarchy;
+		}return hierarchy;
+	}
+	
+	/**
+	 * Returns the contraction hierarchy if it has been built
+	 * @return The contraction hierarchy, or null if it has not been built
+	 */
+	public ContractionHierarchy getContractionHierarchy(){
+		return contractionHierarchy;
+	}
+	
+	/**
+	 * Records the congestion a car observed while travelling along a road, may be called by many cars at once
+	 * Once enough time has passed the new travel times are published and routes planned on the old ones are discarded
+	 * @param road The road the car travelled along
+	 * @param vehicleCount The average number of vehicles the car saw on the road
+	 * @param lightDwell The time the car spent waiting at traffic lights on the road
+	 */
+	public void reportCongestion(Road road, float vehicleCount, float lightDwell){
+		Edge edge = roads.get(road);
+		if(edge != null){
+			congestionModel.report(edge.getId(), vehicleCount, lightDwell);
+		}
+	}
+	
+	/**
+	 * Returns the simulation time, the time the cars using the graph have been updated for
+	 * @return The simulation time in seconds
+	 */
+	public double getSimulationTime(){
+		return simulationTime;
+	}
+	
+	/**
+	 * Moves the simulation time forward to the time a car has been updated to, publishing new travel times
+	 * whenever the refresh interval of simulation time has passed and the reported congestion changed a travel time
+	 * Every car updated in the same tick reports the same time, so the time only moves forward once per tick
+	 * @param time The simulation time the car has been updated to
+	 */
+	public synchronized void advanceSimulationTime(double time){
+		if(time > simulationTime){
+			simulationTime = time;
+		}if(congestionModel.refreshIfDue(simulationTime)){
+			graphChanged();
+		}
+	}
+	
+	/**
+	 * Records that the costs of the graph have changed so routes planned before the change are not reused,
+	 * and customizes the contraction hierarchy for the new travel times
+	 * Only called when a travel time really changed, cached routes planned on the old version miss from then on
+	 * and are removed when next asked for or evicted, so the cache is not cleared here
+	 */
+	void graphChanged(){
+		ContractionHierarchy hierarchy = contractionHierarchy;
+		int graphVersion = version.incrementAndGet();
+		if(hierarchy != null){
+			contractionHierarchy = hierarchy.customize(congestionModel.getTravelTimes(), graphVersion);
 		}
 	}
 	
@@ -72,63 +320,514 @@ public class Graph {
 	 * @return Boolean indicating whether a valid route exists to the destination
 	 */
 	public boolean isValidRoute(Road currentRoad, Point2D.Double destination){
-		Edge currentEdge;
-		boolean destinationFound;	
-		currentEdge = roads.get(currentRoad);
-		destinationFound = depthFirstSearch(currentEdge, destination);
-		setNodesToUnvisited();
-		return destinationFound;		
+		SearchState searchState = searchStates.get();
+		beginSearch(searchState, destination);
+		return destinationReachable(roads.get(currentRoad), searchState);
+	}
+	
+	/**
+	 * Returns whether any road that reaches the destination is in the same connected component as the given edge
+	 * The roads that reach the destination must already be marked in the search state
+	 * @param currentEdge The edge the car is currently on
+	 * @param searchState The state of the current search
+	 * @return Boolean indicating whether a valid route exists to the destination
+	 */
+	private boolean destinationReachable(Edge currentEdge, SearchState searchState){
+		int component = compactGraph.getComponent(currentEdge.getStartNode().getId());
+		for(int i=0;i<searchState.getGoalEdgeCount();i++){
+			if(compactGraph.getComponent(compactGraph.getEdgeStartNode(searchState.getGoalEdge(i))) == component){
+				return true;
+			}
+		}return false;
+	}
+	
+	/**
+	 * Plans the fastest route from the given road to the destination using A* search
+	 * @param currentRoad The road the car is starting on
+	 * @param destination The destination the car wants to reach
+	 * @return Returns the route if a valid route exists, null otherwise
+	 */
+	public PlannedPath planRoute(Road currentRoad, Point2D.Double destination){
+		return planRoute(currentRoad, destination, SearchType.AStar);
 	}
 	
 	/**
 	 * Plans a route from the given road to the destination
 	 * @param currentRoad The road the car is starting on
 	 * @param destination The destination the car wants to reach
+	 * @param searchType The search used to find the route
 	 * @return Returns the route if a valid route exists, null otherwise
 	 */
-	public ArrayList<Node> planRoute(Road currentRoad, Point2D.Double destination){
+	public PlannedPath planRoute(Road currentRoad, Point2D.Double destination, SearchType searchType){
+		return planRoute(currentRoad, destination, searchType, simulationTime);
+	}
+	
+	/**
+	 * Plans the fastest route from the given road to the destination for a car leaving at the given time,
+	 * waiting at each traffic light for as long as its learned phase predicts
+	 * @param currentRoad The road the car is starting on
+	 * @param destination The destination the car wants to reach
+	 * @param departureTime The simulation time the car leaves at
+	 * @return Returns the route if a valid route exists, null otherwise
+	 */
+	public PlannedPath planRoute(Road currentRoad, Point2D.Double destination, double departureTime){
+		return planRoute(currentRoad, destination, SearchType.TimeDependent, departureTime);
+	}
+	
+	/**
+	 * Plans a route from the given road to the destination
+	 * @param currentRoad The road the car is starting on
+	 * @param destination The destination the car wants to reach
+	 * @param searchType The search used to find the route
+	 * @param departureTime The time the car leaves, only used by time dependent searches
+	 * @return Returns the route if a valid route exists, null otherwise
+	 */
+	private PlannedPath planRoute(Road currentRoad, Point2D.Double destination, SearchType searchType, double departureTime){
 		Node startingNode;
-		ArrayList<Node> route = null;
+		PlannedPath route = null;
 		Edge currentEdge = roads.get(currentRoad);
+		SearchState searchState = searchStates.get();
+		int graphVersion = version.get();
+		ContractionHierarchy hierarchy = contractionHierarchy;
+		
+		//A hierarchy not yet customized for the current travel times would plan on the old costs, so use A* search
+		if(searchType == SearchType.ContractionHierarchy && (hierarchy == null || hierarchy.getGraphVersion() != graphVersion)){
+			if(hierarchy != null){
+				hierarchy.recordFallback();
+			}searchType = SearchType.AStar;
+		}
+		
+		//Reuse a recently planned fastest route if it also reaches this exact destination
+		if(searchType == SearchType.AStar){
+			route = routeCache.get(currentEdge, destination, graphVersion);
+			if(route != null && reachesDestination(route.getNodeId(route.size()-1), destination)){
+				return route;
+			}route = null;
+		}
 		
 		//Check if there is a valid route
-		if(isValidRoute(currentRoad, destination)){
-			route = new ArrayList<Node>();
-			if(!currentEdge.hasEndNode()){
-				startingNode = currentEdge.getStartNode();
+		beginSearch(searchState, destination);
+		if(destinationReachable(currentEdge, searchState)){
+			startingNode = getStartingNode(currentEdge, destination);
+			//Find the route to the destination
+			if(searchType == SearchType.Greedy){
+				route = greedySearch(startingNode, destination, searchState);
+			}else if(searchType == SearchType.ContractionHierarchy){
+				route = hierarchySearch(hierarchy, startingNode, destination, searchState);
+			}else if(searchType == SearchType.BidirectionalDijkstra || searchType == SearchType.BidirectionalAStar){
+				route = bidirectionalSearch(startingNode, destination, searchState, searchType == SearchType.BidirectionalAStar);
+			}else if(searchType == SearchType.TimeDependent){
+				route = timeDependentSearch(startingNode, destination, searchState, departureTime);
 			}else{
-				//Choose the node closest to the destination as the starting node
-				if(currentEdge.getStartNode().straightLineDistanceToDestination(destination) > currentEdge.getEndNode().straightLineDistanceToDestination(destination)){
-					startingNode = currentEdge.getEndNode();
-				}else{
-					startingNode = currentEdge.getStartNode();
+				route = aStarSearch(startingNode, destination, searchState);
+				if(route != null){
+					routeCache.put(currentEdge, destination, graphVersion, route);
 				}
 			}
-			//Find the route to the destination
-			route = pathFindingSearch(startingNode, destination);
-			this.setNodesToUnvisited();
 		}
 		
 		return route;
 	}
 	
 	/**
-	 * Uses A* search to find an efficient route to the given destination
+	 * Chooses the end of the car's current road that a route to the destination starts from
+	 * @param currentEdge The edge the car is currently on
+	 * @param destination The destination the car wants to reach
+	 * @return The node closest to the destination, or the start node if the road has no end intersection
+	 */
+	Node getStartingNode(Edge currentEdge, Point2D.Double destination){
+		if(!currentEdge.hasEndNode()){
+			return currentEdge.getStartNode();
+		}else{
+			//Choose the node closest to the destination as the starting node
+			if(currentEdge.getStartNode().straightLineDistanceToDestination(destination) > currentEdge.getEndNode().straightLineDistanceToDestination(destination)){
+				return currentEdge.getEndNode();
+			}else{
+				return currentEdge.getStartNode();
+			}
+		}
+	}
+	
+	/**
+	 * Returns the nodes at either end of the roads that reach the destination
+	 * @param destination The destination to be reached
+	 * @return The ids of the nodes the destination can be reached from directly
+	 */
+	int[] findGoalNodes(Point2D.Double destination){
+		SearchState searchState = searchStates.get();
+		int[] goalNodes;
+		int goalNodeCount = 0;
+		int edge, endNode;
+		
+		beginSearch(searchState, destination);
+		goalNodes = new int[searchState.getGoalEdgeCount()*2];
+		//Each node is only added once, closing a node marks it as already added
+		for(int i=0;i<searchState.getGoalEdgeCount();i++){
+			edge = searchState.getGoalEdge(i);
+			if(!searchState.isClosed(compactGraph.getEdgeStartNode(edge))){
+				searchState.close(compactGraph.getEdgeStartNode(edge));
+				goalNodes[goalNodeCount] = compactGraph.getEdgeStartNode(edge);
+				goalNodeCount++;
+			}
+			endNode = compactGraph.getEdgeEndNode(edge);
+			if(endNode != -1 && !searchState.isClosed(endNode)){
+				searchState.close(endNode);
+				goalNodes[goalNodeCount] = endNode;
+				goalNodeCount++;
+			}
+		}return Arrays.copyOf(goalNodes, goalNodeCount);
+	}
+	
+	/**
+	 * Uses A* search over the compact graph to find the fastest route to the given destination
+	 * The cost of a route is the expected travel time along its roads, which is never less than the time
+	 * taken at the free flow speed, so the straight line distance at the free flow speed is an admissible
+	 * heuristic and the first intersection taken from the open set that reaches the destination is optimal
+	 * @param startingNode The node the search starts from
+	 * @param destination The destination to be reached
+	 * @param searchState The state of this search
+	 * @return Null if no path found or the path from the starting node to the destination
+	 */
+	private PlannedPath aStarSearch(Node startingNode, Point2D.Double destination, SearchState searchState){
+		BinaryHeap openSet = searchState.getOpenSet();
+		double[] travelTimes = congestionModel.getTravelTimes();
+		double destinationX = destination.getX();
+		double destinationY = destination.getY();
+		int currentNode, nextNode;
+		double tentativeCost;
+		
+		searchState.setCost(startingNode.getId(), 0, -1);
+		openSet.insertOrDecrease(startingNode.getId(), compactGraph.straightLineDistance(startingNode.getId(), destinationX, destinationY)/CongestionModel.FREEFLOWSPEED);
+		
+		while(!openSet.isEmpty()){
+			currentNode = openSet.removeMin();
+			searchState.close(currentNode);
+			
+			if(searchState.isGoalNode(currentNode)){
+				return buildRoute(searchState, currentNode);
+			}
+			
+			//Queue each neighbouring node that has been reached by a shorter route than before
+			for(int arc=compactGraph.getFirstArc(currentNode);arc<compactGraph.getEndArc(currentNode);arc++){
+				nextNode = compactGraph.getArcTarget(arc);
+				if(nextNode != -1 && !searchState.isClosed(nextNode)){
+					tentativeCost = searchState.getCost(currentNode) + travelTimes[compactGraph.getArcEdge(arc)];
+					if(tentativeCost < searchState.getCost(nextNode)){
+						searchState.setCost(nextNode, tentativeCost, currentNode);
+						openSet.insertOrDecrease(nextNode, tentativeCost + (compactGraph.straightLineDistance(nextNode, destinationX, destinationY)/CongestionModel.FREEFLOWSPEED));
+					}
+				}
+			}
+		}return null;
+	}
+	
+	/**
+	 * Uses A* search over the compact graph to find the route that reaches the destination soonest for a car
+	 * leaving at the given time, where the cost of each intersection is the time the car is expected to reach it
+	 * Crossing an intersection waits for the green phase its traffic lights are predicted to be in at that time,
+	 * falling back to the average dwell time of the road when the phase of the lights has not been learned
+	 * Waiting for a light never lets a car that arrives later leave sooner, so the first time each intersection is
+	 * taken from the open set is the earliest it can be reached, and the A* heuristic stays admissible
+	 * @param startingNode The node the search starts from
+	 * @param destination The destination to be reached
+	 * @param searchState The state of this search
+	 * @param departureTime The time the car leaves the starting node
+	 * @return Null if no path found or the path from the starting node to the destination
+	 */
+	private PlannedPath timeDependentSearch(Node startingNode, Point2D.Double destination, SearchState searchState, double departureTime){
+		BinaryHeap openSet = searchState.getOpenSet();
+		double[] travelTimes = congestionModel.getTravelTimes();
+		double[] movingTimes = congestionModel.getMovingTimes();
+		double destinationX = destination.getX();
+		double destinationY = destination.getY();
+		int currentNode, nextNode, edge, approach;
+		double arrivalTime, wait;
+		
+		searchState.setCost(startingNode.getId(), 0, -1);
+		openSet.insertOrDecrease(startingNode.getId(), compactGraph.straightLineDistance(startingNode.getId(), destinationX, destinationY)/CongestionModel.FREEFLOWSPEED);
+		
+		while(!openSet.isEmpty()){
+			currentNode = openSet.removeMin();
+			searchState.close(currentNode);
+			
+			if(searchState.isGoalNode(currentNode)){
+				return buildRoute(searchState, currentNode);
+			}
+			
+			//Queue each neighbouring node that can be reached sooner than before
+			for(int arc=compactGraph.getFirstArc(currentNode);arc<compactGraph.getEndArc(currentNode);arc++){
+				nextNode = compactGraph.getArcTarget(arc);
+				if(nextNode != -1 && !searchState.isClosed(nextNode)){
+					edge = compactGraph.getArcEdge(arc);
+					arrivalTime = searchState.getCost(currentNode) + movingTimes[edge];
+					approach = SignalPhaseModel.approach(EtaModel.headingAngle(compactGraph.getNodeX(currentNode), compactGraph.getNodeY(currentNode), compactGraph.getNodeX(nextNode), compactGraph.getNodeY(nextNode)));
+					wait = signalPhaseModel.predictWait(nextNode, approach, departureTime + arrivalTime);
+					if(wait < 0){
+						wait = Math.max(0, travelTimes[edge] - movingTimes[edge]);
+					}arrivalTime += wait;
+					if(arrivalTime < searchState.getCost(nextNode)){
+						searchState.setCost(nextNode, arrivalTime, currentNode);
+						openSet.insertOrDecrease(nextNode, arrivalTime + (compactGraph.straightLineDistance(nextNode, destinationX, destinationY)/CongestionModel.FREEFLOWSPEED));
+					}
+				}
+			}
+		}return null;
+	}
+	
+	/**
+	 * Searches forward from the starting node and backward from the goal nodes at once until the two searches meet
+	 * The backward search starts each goal node at the straight line cost A* search finishes with, so both find
+	 * routes of the same cost
+	 * With the heuristic each search is guided by the average of the straight line estimates towards the destination
+	 * and back towards the start, which keeps the keys of both searches consistent so they may stop on the same rule
+	 * The roads that reach the destination must already be marked in the search state
+	 * @param startingNode The node the search starts from
+	 * @param destination The destination to be reached
+	 * @param forward The state of this search, used for the forward half
+	 * @param useHeuristic True for bidirectional A* search, false for bidirectional Dijkstra search
+	 * @return Null if no path found or the path from the starting node to the destination
+	 */
+	private PlannedPath bidirectionalSearch(Node startingNode, Point2D.Double destination, SearchState forward, boolean useHeuristic){
+		SearchState backward = backwardSearchStates.get();
+		SearchState current, opposite;
+		BinaryHeap forwardSet = forward.getOpenSet();
+		BinaryHeap backwardSet = backward.getOpenSet();
+		double[] travelTimes = congestionModel.getTravelTimes();
+		double destinationX = destination.getX();
+		double destinationY = destination.getY();
+		double startX = compactGraph.getNodeX(startingNode.getId());
+		double startY = compactGraph.getNodeY(startingNode.getId());
+		double bestCost = Double.POSITIVE_INFINITY;
+		double tentativeCost, goalCost, potential;
+		int meetingNode = -1;
+		int currentNode, nextNode, edge, node;
+		boolean forwardTurn;
+		
+		forward.setCost(startingNode.getId(), 0, -1);
+		forwardSet.insertOrDecrease(startingNode.getId(), averagePotential(startingNode.getId(), startX, startY, destinationX, destinationY, useHeuristic));
+		//Start the backward search from each goal node at the cost of reaching the destination from it
+		backward.beginSearch();
+		for(int i=0;i<forward.getGoalEdgeCount();i++){
+			edge = forward.getGoalEdge(i);
+			for(int end=0;end<2;end++){
+				node = end == 0 ? compactGraph.getEdgeStartNode(edge) : compactGraph.getEdgeEndNode(edge);
+				if(node != -1){
+					goalCost = compactGraph.straightLineDistance(node, destinationX, destinationY)/CongestionModel.FREEFLOWSPEED;
+					if(goalCost < backward.getCost(node)){
+						backward.setCost(node, goalCost, -1);
+						backwardSet.insertOrDecrease(node, goalCost - averagePotential(node, startX, startY, destinationX, destinationY, useHeuristic));
+					}
+				}
+			}
+		}
+		
+		//Expand the search with the smaller key until no route through the unexplored nodes can be faster
+		while(!forwardSet.isEmpty() && !backwardSet.isEmpty() && forwardSet.peekKey() + backwardSet.peekKey() < bestCost){
+			forwardTurn = forwardSet.peekKey() <= backwardSet.peekKey();
+			current = forwardTurn ? forward : backward;
+			opposite = forwardTurn ? backward : forward;
+			currentNode = current.getOpenSet().removeMin();
+			current.close(currentNode);
+			if(opposite.isReached(currentNode) && current.getCost(currentNode) + opposite.getCost(currentNode) < bestCost){
+				bestCost = current.getCost(currentNode) + opposite.getCost(currentNode);
+				meetingNode = currentNode;
+			}
+			
+			for(int arc=compactGraph.getFirstArc(currentNode);arc<compactGraph.getEndArc(currentNode);arc++){
+				nextNode = compactGraph.getArcTarget(arc);
+				if(nextNode != -1 && !current.isClosed(nextNode)){
+					tentativeCost = current.getCost(currentNode) + travelTimes[compactGraph.getArcEdge(arc)];
+					if(tentativeCost < current.getCost(nextNode)){
+						potential = averagePotential(nextNode, startX, startY, destinationX, destinationY, useHeuristic);
+						current.setCost(nextNode, tentativeCost, currentNode);
+						current.getOpenSet().insertOrDecrease(nextNode, forwardTurn ? tentativeCost + potential : tentativeCost - potential);
+						if(opposite.isReached(nextNode) && tentativeCost + opposite.getCost(nextNode) < bestCost){
+							bestCost = tentativeCost + opposite.getCost(nextNode);
+							meetingNode = nextNode;
+						}
+					}
+				}
+			}
+		}
+		
+		if(meetingNode == -1){
+			return null;
+		}return buildBidirectionalRoute(forward, backward, meetingNode);
+	}
+	
+	/**
+	 * Returns the forward potential of a node for bidirectional search, half the difference between the straight
+	 * line travel time to the destination and from the start, the backward potential is its negative
+	 * @param node The node id
+	 * @param startX The x position of the starting node
+	 * @param startY The y position of the starting node
+	 * @param destinationX The x position of the destination
+	 * @param destinationY The y position of the destination
+	 * @param useHeuristic False for bidirectional Dijkstra search, which has no potential
+	 * @return The forward potential of the node
+	 */
+	private double averagePotential(int node, double startX, double startY, double destinationX, double destinationY, boolean useHeuristic){
+		if(!useHeuristic){
+			return 0;
+		}return (compactGraph.straightLineDistance(node, destinationX, destinationY) - compactGraph.straightLineDistance(node, startX, startY))/(2*CongestionModel.FREEFLOWSPEED);
+	}
+	
+	/**
+	 * Builds the route through the meeting node from the previous nodes of the forward search back to the start
+	 * and the previous nodes of the backward search on to the goal node
+	 * @param forward The search from the starting node
+	 * @param backward The search from the goal nodes
+	 * @param meetingNode The node where the searches met on the fastest route
+	 * @return The nodes on the route in the order they are travelled
+	 */
+	private PlannedPath buildBidirectionalRoute(SearchState forward, SearchState backward, int meetingNode){
+		int forwardLength = 0;
+		int length;
+		int[] routeNodes;
+		
+		for(int node=meetingNode;node!=-1;node=forward.getPreviousNode(node)){
+			forwardLength++;
+		}length = forwardLength;
+		for(int node=backward.getPreviousNode(meetingNode);node!=-1;node=backward.getPreviousNode(node)){
+			length++;
+		}
+		routeNodes = new int[length];
+		length = forwardLength;
+		for(int node=meetingNode;node!=-1;node=forward.getPreviousNode(node)){
+			length--;
+			routeNodes[length] = node;
+		}length = forwardLength;
+		for(int node=backward.getPreviousNode(meetingNode);node!=-1;node=backward.getPreviousNode(node)){
+			routeNodes[length] = node;
+			length++;
+		}return new PlannedPath(this, routeNodes);
+	}
+	
+	/**
+	 * Uses the contraction hierarchy to find the fastest route to any node whose roads reach the destination
+	 * The cost of reaching the destination from a goal node is the same straight line estimate A* search finishes with,
+	 * so both searches find routes of the same cost
+	 * The roads that reach the destination must already be marked in the search state
+	 * @param hierarchy The contraction hierarchy built for the current version of the graph
+	 * @param startingNode The node the search starts from
+	 * @param destination The destination to be reached
+	 * @param searchState The state of this search
+	 * @return Null if no path found or the path from the starting node to the destination
+	 */
+	private PlannedPath hierarchySearch(ContractionHierarchy hierarchy, Node startingNode, Point2D.Double destination, SearchState searchState){
+		int[] goalNodes = new int[searchState.getGoalEdgeCount()*2];
+		double[] goalCosts = new double[goalNodes.length];
+		int goalNodeCount = 0;
+		int edge;
+		int[] routeNodes;
+		
+		for(int i=0;i<searchState.getGoalEdgeCount();i++){
+			edge = searchState.getGoalEdge(i);
+			goalNodes[goalNodeCount] = compactGraph.getEdgeStartNode(edge);
+			goalNodeCount++;
+			if(compactGraph.getEdgeEndNode(edge) != -1){
+				goalNodes[goalNodeCount] = compactGraph.getEdgeEndNode(edge);
+				goalNodeCount++;
+			}
+		}for(int i=0;i<goalNodeCount;i++){
+			goalCosts[i] = compactGraph.straightLineDistance(goalNodes[i], destination.getX(), destination.getY())/CongestionModel.FREEFLOWSPEED;
+		}
+		routeNodes = hierarchy.findRoute(startingNode.getId(), goalNodes, goalCosts, goalNodeCount);
+		if(routeNodes == null){
+			return null;
+		}return new PlannedPath(this, routeNodes);
+	}
+	
+	/**
+	 * Builds the route to the final node by following the previous nodes back to the start
+	 * @param searchState The state of the search that reached the final node
+	 * @param finalNode The last node on the route
+	 * @return The nodes on the route in the order they are travelled
+	 */
+	private PlannedPath buildRoute(SearchState searchState, int finalNode){
+		int length = 0;
+		
+		for(int node=finalNode;node!=-1;node=searchState.getPreviousNode(node)){
+			length++;
+		}
+		int[] routeNodes = new int[length];
+		for(int node=finalNode;node!=-1;node=searchState.getPreviousNode(node)){
+			length--;
+			routeNodes[length] = node;
+		}
+		return new PlannedPath(this, routeNodes);
+	}
+	
+	/**
+	 * Starts a new search and marks the roads that reach the destination using the edge index
+	 * so that the search can check whether it has reached the destination without any geometry
+	 * @param searchState The state of the new search
+	 * @param destination The destination to be reached
+	 */
+	private void beginSearch(SearchState searchState, Point2D.Double destination){
+		int edge;
+		double destinationX = destination.getX();
+		double destinationY = destination.getY();
+		int endCandidate = edgeIndex.getEndCandidate(destinationX, destinationY);
+		
+		searchState.beginSearch();
+		for(int candidate=edgeIndex.getFirstCandidate(destinationX, destinationY);candidate<endCandidate;candidate++){
+			edge = edgeIndex.getCandidateEdge(candidate);
+			if(edges[edge].destinationOnRoad(destinationX, destinationY)){
+				searchState.addGoalEdge(edge, compactGraph.getEdgeStartNode(edge), compactGraph.getEdgeEndNode(edge));
+			}
+		}
+	}
+	
+	/**
+	 * Returns whether any of the roads connected to the node can reach the destination
+	 * @param node The node id to be checked
+	 * @param destination The destination to be reached
+	 * @return Boolean indicating whether the destination is on one of the node's roads
+	 */
+	private boolean reachesDestination(int node, Point2D.Double destination){
+		for(int arc=compactGraph.getFirstArc(node);arc<compactGraph.getEndArc(node);arc++){
+			if(edges[compactGraph.getArcEdge(arc)].destinationOnRoad(destination)){
+				return true;
+			}
+		}return false;
+	}
+	
+	/**
+	 * Uses a greedy depth first search to find a route to the given destination
+	 * @param startingNode The node the search starts from
+	 * @param destination The destination to be reached
+	 * @param searchState The state of this search
+	 * @return Null if no path found or the path from the starting node to the destination
+	 */
+	private PlannedPath greedySearch(Node startingNode, Point2D.Double destination, SearchState searchState){
+		int finalNode;
+		
+		searchState.setCost(startingNode.getId(), 0, -1);
+		searchState.close(startingNode.getId());
+		finalNode = pathFindingSearch(startingNode, destination, searchState);
+		if(finalNode == -1){
+			return null;
+		}return buildRoute(searchState, finalNode);
+	}
+	
+	/**
+	 * Searches depth first from the current node, visiting the roads that end closest to the destination first
+	 * Each node searched remembers the node it was reached from so the route can be built once the destination is found
 	 * @param currentNode The node that is currently being searched
 	 * @param destination The destination to be reached
-	 * @return Null if no path found or the path from the current node to the destination
+	 * @param searchState The state of this search
+	 * @return The id of the node the destination is reached from, or -1 if no path found
 	 */
-	private ArrayList<Node> pathFindingSearch(Node currentNode, Point2D.Double destination){
-		ArrayList<Node> route = null;
+	private int pathFindingSearch(Node currentNode, Point2D.Double destination, SearchState searchState){
+		int finalNode = -1;
 		Node nextNode;
 		ArrayList<Edge> edges = currentNode.getRoads();
 		
 		//First check if any of the roads can reach the destination
 		for(Edge edge : edges){
-			if(edge.destinationOnRoad(destination)){
-				route = new ArrayList<Node>();
-				route.add(currentNode);
-				return route;
+			if(searchState.isGoalEdge(edge.getId())){
+				return currentNode.getId();
 			}
 		}//Sort the edges based on how close they are to the destination
 		edges = this.sortEdgesByClosestIntersectionToDestination(currentNode, destination);
@@ -137,16 +836,16 @@ public class Graph {
 		for(Edge edge : edges){
 			if(edge.hasEndNode()){
 				nextNode = edge.getEndOfRoad(currentNode);
-				if(!nextNode.getVisited()){
-					nextNode.setVisited();
-					route = pathFindingSearch(nextNode, destination);
-					if(route != null){
-						route.add(0, currentNode);
-						return route;
+				if(!searchState.isClosed(nextNode.getId())){
+					searchState.close(nextNode.getId());
+					searchState.setCost(nextNode.getId(), 0, currentNode.getId());
+					finalNode = pathFindingSearch(nextNode, destination, searchState);
+					if(finalNode != -1){
+						return finalNode;
 					}
 				}
 			}
-		}return route;
+		}return finalNode;
 	}
 	
 	/**
@@ -191,65 +890,4 @@ public class Graph {
 		}return sortedEdges;
 	}
 	
-	/**
-	 * Sets all nodes in the graph to unvisited
-	 * Must be done after valid route or path finding search
-	 */
-	private void setNodesToUnvisited(){
-		for(Node node : intersections.values()){
-			node.setUnvisited();
-		}
-	}
-	
-	
-	
-	/**
-	 * Uses DFS to determine whether a valid route exists to the destination
-	 * @param currentEdge The edge the car is currently on
-	 * @param destination The destination the car wants to reach
-	 * @return Boolean indicating whether a valid route exists to the destination
-	 */
-	private boolean depthFirstSearch(Edge currentEdge, Point2D.Double destination){
-		boolean destinationFound;
-		Node currentNode;
-		ArrayList<Edge> nodeEdges;
-	
-		//Check whether the given edge is close enough to the destination
-		destinationFound = currentEdge.destinationOnRoad(destination);
-		if(destinationFound){
-			return true;
-		}else{
-			//Search all the edges of the start node if not yet visited
-			currentNode = currentEdge.getStartNode();
-			if(!currentNode.getVisited()){
-				currentNode.setVisited();
-				nodeEdges = currentNode.getRoads();
-				for(Edge edge : nodeEdges){
-					if(edge != currentEdge){
-						destinationFound = depthFirstSearch(edge, destination);
-						if(destinationFound){
-							return true;
-						}
-					}
-				}
-			}//Search all the edges of the end node if not yet visited
-			if(currentEdge.hasEndNode()){
-				currentNode = currentEdge.getEndNode();
-				if(!currentNode.getVisited()){
-					currentNode.setVisited();
-					nodeEdges = currentNode.getRoads();
-					for(Edge edge : nodeEdges){
-						if(edge != currentEdge){
-							destinationFound = depthFirstSearch(edge, destination);
-							if(destinationFound){
-								return true;
-							}
-						}
-					}
-				}
-			}
-		}return false;
-		
-	}
-	
 }
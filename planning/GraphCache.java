@@ -0,0 +1,195 @@
+package group26.planning;
+
+import java.io.File;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.unimelb.swen30006.partc.core.World;
+
+/**
+ * A process wide cache of built graphs so that every car in the same world shares one graph
+ * Graphs are keyed on the identity of the world and are released once the world is no longer used
+ * A WeakHashMap would compare worlds with equals, which World is free to override, so the cache keeps its own
+ * weak references and compares worlds with ==
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public final class GraphCache {
+	//The graphs built for the worlds with each identity hash code
+	private static final Map<Integer, ArrayList<CachedGraph>> graphs = new HashMap<Integer, ArrayList<CachedGraph>>();
+	//The references of worlds that are no longer used, queued once the world has been collected
+	private static final ReferenceQueue<World> releasedWorlds = new ReferenceQueue<World>();
+	//The number of requests that found a graph already built
+	private static long hitCount = 0;
+	//The number of requests that had to build a graph
+	private static long missCount = 0;
+	//The time spent building graphs in nanoseconds
+	private static long totalBuildTime = 0;
+	//The time spent building the most recent graph in nanoseconds
+	private static long lastBuildTime = 0;
+	
+	private GraphCache(){
+	}
+	
+	/**
+	 * Returns the graph for the given world, building it if this is the first request for the world
+	 * @param world The world that contains the intersections and roads the graph is constructed from
+	 * @return The graph shared by every car in the world
+	 */
+	public static synchronized Graph getGraph(World world){
+		return getGraph(world, null);
+	}
+	
+	/**
+	 * Returns the graph for the given world, loading it from a snapshot file if this is the first request for the world
+	 * If the snapshot is missing or was built for a different world the graph is built and a new snapshot written
+	 * @param world The world that contains the intersections and roads the graph is constructed from
+	 * @param snapshotFile The graph snapshot file, or null to always build the graph
+	 * @return The graph shared by every car in the world
+	 */
+	public static synchronized Graph getGraph(World world, File snapshotFile){
+		long buildStart;
+		Graph graph;
+		
+		removeReleasedWorlds();
+		graph = findGraph(world);
+		if(graph != null){
+			hitCount++;
+		}else{
+			missCount++;
+			buildStart = System.nanoTime();
+			if(snapshotFile != null){
+				graph = GraphSnapshot.loadOrBuild(world, snapshotFile);
+			}else{
+				graph = new Graph(world);
+			}
+			lastBuildTime = System.nanoTime() - buildStart;
+			totalBuildTime += lastBuildTime;
+			addGraph(world, graph);
+		}return graph;
+	}
+	
+	/**
+	 * Returns the graph cached for the given world
+	 * @param world The world to find the graph of
+	 * @return The graph built for this exact world, or null if none is cached
+	 */
+	private static Graph findGraph(World world){
+		ArrayList<CachedGraph> cachedGraphs = graphs.get(System.identityHashCode(world));
+		
+		if(cachedGraphs != null){
+			for(CachedGraph cachedGraph : cachedGraphs){
+				if(cachedGraph.get() == world){
+					return cachedGraph.graph;
+				}
+			}
+		}return null;
+	}
+	
+	/**
+	 * Adds the graph built for the given world to the cache
+	 * @param world The world the graph was built for
+	 * @param graph The graph built for the world
+	 */
+	private static void addGraph(World world, Graph graph){
+		CachedGraph cachedGraph = new CachedGraph(world, graph);
+		ArrayList<CachedGraph> cachedGraphs = graphs.get(cachedGraph.hash);
+		
+		if(cachedGraphs == null){
+			cachedGraphs = new ArrayList<CachedGraph>(1);
+			graphs.put(cachedGraph.hash, cachedGraphs);
+		}cachedGraphs.add(cachedGraph);
+	}
+	
+	/**
+	 * Removes the graphs of every world that has been collected since the last request
+	 */
+	private static void removeReleasedWorlds(){
+		Reference<? extends World> released;
+		CachedGraph cachedGraph;
+		ArrayList<CachedGraph> cachedGraphs;
+		
+		while((released = releasedWorlds.poll()) != null){
+			cachedGraph = (CachedGraph)released;
+			cachedGraphs = graphs.get(cachedGraph.hash);
+			if(cachedGraphs != null){
+				cachedGraphs.remove(cachedGraph);
+				if(cachedGraphs.isEmpty()){
+					graphs.remove(cachedGraph.hash);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Returns the number of requests that found a graph already built
+	 * @return The number of cache hits
+	 */
+	public static synchronized long getHitCount(){
+		return hitCount;
+	}
+	
+	/**
+	 * Returns the number of requests that had to build a graph
+	 * @return The number of cache misses
+	 */
+	public static synchronized long getMissCount(){
+		return missCount;
+	}
+	
+	/**
+	 * Returns the total time spent building graphs
+	 * @return The build time in milliseconds
+	 */
+	public static synchronized double getTotalBuildTime(){
+		return totalBuildTime/1000000.0;
+	}
+	
+	/**
+	 * Returns the time spent building the most recent graph
+	 * @return The build time in milliseconds
+	 */
+	public static synchronized double getLastBuildTime(){
+		return lastBuildTime/1000000.0;
+	}
+	
+	/**
+	 * Returns a summary of the cache statistics
+	 * @return The hit count, miss count and build times of the cache
+	 */
+	public static synchronized String getStatistics(){
+		return "Graph cache hits:" + hitCount + " misses:" + missCount + " total build time:" + getTotalBuildTime() + "ms last build time:" + getLastBuildTime() + "ms";
+	}
+	
+	/**
+	 * Removes every graph from the cache and resets the statistics
+	 */
+	public static synchronized void clear(){
+		graphs.clear();
+		hitCount = 0;
+		missCount = 0;
+		totalBuildTime = 0;
+		lastBuildTime = 0;
+	}
+	
+	/**
+	 * A weak reference to a world together with the graph built for it
+	 * The identity hash code of the world is kept so the entry can still be found once the world is collected
+	 */
+	private static class CachedGraph extends WeakReference<World> {
+		//The identity hash code of the world
+		private final int hash;
+		//The graph built for the world
+		private final Graph graph;
+		
+		private CachedGraph(World world, Graph graph){
+			super(world, releasedWorlds);
+			this.hash = System.identityHashCode(world);
+			this.graph = graph;
+		}
+	}
+}
@@ -0,0 +1,387 @@
+package group26.planning;
+
+import java.awt.geom.Point2D;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.unimelb.swen30006.partc.core.World;
+import com.unimelb.swen30006.partc.roads.Intersection;
+import com.unimelb.swen30006.partc.roads.Intersection.Direction;
+import com.unimelb.swen30006.partc.roads.Road;
+
+/**
+ * A binary snapshot of how the roads of a world connect its intersections, so a graph can be rebuilt on the next
+ * start without reading the roads of every intersection
+ * Snapshots are read through a memory mapped buffer so processes loading the same file share the page cache
+ * A snapshot records a fingerprint of the world it was built from and is only used for a world with the same
+ * fingerprint, otherwise the graph is built from the world again
+ * The file holds a header of the magic number, format version, world fingerprint, node count, edge count and road count,
+ * followed by the node positions, the edge id of the road in each direction of each intersection,
+ * the start and end node of each edge, the end position of each edge without an end node and the index of the road
+ * of each edge in the roads of the world
+ * Every id is checked when the file is read, so a damaged file is rebuilt rather than loaded
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class GraphSnapshot {
+	//Identifies a graph snapshot file
+	private static final int MAGIC = 0x47323647;
+	//Increases whenever the layout of the file changes
+	private static final int FORMATVERSION = 2;
+	//The size of the header in bytes
+	private static final int HEADERSIZE = 28;
+	//The number of directions a road may leave an intersection in
+	private static final int DIRECTIONCOUNT = Direction.values().length;
+	//The constants of the 64 bit FNV-1a hash used for the world fingerprint, applied to whole values rather than bytes
+	private static final long FNVOFFSET = 0xcbf29ce484222325L;
+	private static final long FNVPRIME = 0x100000001b3L;
+	
+	//The fingerprint of the world the snapshot was built from
+	private final long fingerprint;
+	//The number of nodes and edges in the graph, and of roads in the world
+	private final int nodeCount, edgeCount, roadCount;
+	//The x and y position of each node
+	private final double[] nodePositions;
+	//The edge id of the road in each direction of each intersection, -1 if there is no road
+	private final int[] roadEdges;
+	//The node each edge starts and ends at, -1 if the edge has no end node
+	private final int[] edgeStartNodes, edgeEndNodes;
+	//The x and y end position of each edge without an end node
+	private final double[] edgeEndPositions;
+	//The index of the road of each edge in the roads of the world
+	private final int[] edgeRoads;
+	
+	/**
+	 * Constructor for the snapshot, reads the body of the file
+	 * @param buffer The mapped file, positioned after the magic number and format version
+	 */
+	private GraphSnapshot(ByteBuffer buffer){
+		this.fingerprint = buffer.getLong();
+		this.nodeCount = buffer.getInt();
+		this.edgeCount = buffer.getInt();
+		this.roadCount = buffer.getInt();
+		this.nodePositions = readDoubles(buffer, nodeCount*2);
+		this.roadEdges = readInts(buffer, nodeCount*DIRECTIONCOUNT);
+		this.edgeStartNodes = readInts(buffer, edgeCount);
+		this.edgeEndNodes = readInts(buffer, edgeCount);
+		this.edgeEndPositions = readDoubles(buffer, edgeCount*2);
+		this.edgeRoads = readInts(buffer, edgeCount);
+	}
+	
+	/**
+	 * Returns the size of a snapshot file
+	 * @param nodeCount The number of nodes in the graph
+	 * @param edgeCount The number of edges in the graph
+	 * @return The size in bytes
+	 */
+	private static long fileSize(long nodeCount, long edgeCount){
+		return HEADERSIZE + (16*nodeCount) + (4*nodeCount*DIRECTIONCOUNT) + (28*edgeCount);
+	}
+	
+	/**
+	 * Returns the graph for the world, loaded from the snapshot file if it was built for the same world
+	 * Otherwise builds the graph from the world and writes a new snapshot for the next start
+	 * @param world The world that contains the intersections and roads
+	 * @param file The snapshot file
+	 * @return The graph of the world
+	 */
+	public static Graph loadOrBuild(World world, File file){
+		return loadOrBuild(world, file, Graph.StorageType.Heap);
+	}
+	
+	/**
+	 * Returns the graph for the world, loaded from the snapshot file if it was built for the same world
+	 * Otherwise builds the graph from the world and writes a new snapshot for the next start
+	 * @param world The world that contains the intersections and roads
+	 * @param file The snapshot file
+	 * @param storageType Where the graph stores the adjacency searches run against
+	 * @return The graph of the world
+	 */
+	public static Graph loadOrBuild(World world, File file, Graph.StorageType storageType){
+		Graph graph = load(world, file, storageType);
+		if(graph == null){
+			graph = new Graph(world, storageType);
+			try{
+				write(graph, world, file);
+			}catch(IOException e){
+				System.out.println("Unable to write graph snapshot " + file + ": " + e.getMessage());
+			}
+		}return graph;
+	}
+	
+	/**
+	 * Loads the graph for the world from the snapshot file
+	 * @param world The world that contains the intersections and roads
+	 * @param file The snapshot file
+	 * @return The graph of the world, or null if the file is missing, unreadable or was built for a different world
+	 */
+	public static Graph load(World world, File file){
+		return load(world, file, Graph.StorageType.Heap);
+	}
+	
+	/**
+	 * Loads the graph for the world from the snapshot file
+	 * @param world The world that contains the intersections and roads
+	 * @param file The snapshot file
+	 * @param storageType Where the graph stores the adjacency searches run against
+	 * @return The graph of the world, or null if the file is missing, unreadable or was built for a different world
+	 */
+	public static Graph load(World world, File file, Graph.StorageType storageType){
+		GraphSnapshot snapshot;
+		if(!file.isFile()){
+			return null;
+		}
+		try{
+			snapshot = read(file);
+		}catch(IOException e){
+			System.out.println("Unable to read graph snapshot " + file + ": " + e.getMessage());
+			return null;
+		}
+		if(snapshot == null){
+			System.out.println("Graph snapshot " + file + " has an unknown format or is damaged, rebuilding the graph");
+			return null;
+		}else if(!snapshot.matches(world)){
+			System.out.println("Graph snapshot " + file + " was built for a different world, rebuilding the graph");
+			return null;
+		}return new Graph(world, snapshot, storageType);
+	}
+	
+	/**
+	 * Maps the snapshot file into memory and reads it
+	 * @param file The snapshot file
+	 * @return The snapshot, or null if the file is not a snapshot of the current format or holds an id out of range
+	 * @throws IOException If the file cannot be read
+	 */
+	static GraphSnapshot read(File file) throws IOException {
+		MappedByteBuffer buffer;
+		GraphSnapshot snapshot;
+		int nodeCount, edgeCount;
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			if(channel.size() < HEADERSIZE){
+				return null;
+			}buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}finally{
+			channel.close();
+		}
+		if(buffer.getInt() != MAGIC || buffer.getInt() != FORMATVERSION){
+			return null;
+		}
+		//Check the counts against the size of the file before allocating anything for them
+		nodeCount = buffer.getInt(16);
+		edgeCount = buffer.getInt(20);
+		if(nodeCount < 0 || edgeCount < 0 || buffer.getInt(24) < 0 || buffer.capacity() != fileSize(nodeCount, edgeCount)){
+			return null;
+		}
+		snapshot = new GraphSnapshot(buffer);
+		if(!inRange(snapshot.roadEdges, -1, snapshot.edgeCount) || !inRange(snapshot.edgeStartNodes, 0, snapshot.nodeCount)
+				|| !inRange(snapshot.edgeEndNodes, -1, snapshot.nodeCount) || !inRange(snapshot.edgeRoads, 0, snapshot.roadCount)){
+			return null;
+		}return snapshot;
+	}
+	
+	/**
+	 * Returns whether every value is within a range
+	 * @param values The values to check
+	 * @param minimum The smallest value allowed
+	 * @param limit The value every value must be less than
+	 * @return True if every value is at least the minimum and less than the limit
+	 */
+	private static boolean inRange(int[] values, int minimum, int limit){
+		for(int value : values){
+			if(value < minimum || value >= limit){
+				return false;
+			}
+		}return true;
+	}
+	
+	/**
+	 * Writes a snapshot of the graph built for the world
+	 * @param graph The graph built from the world
+	 * @param world The world the graph was built from
+	 * @param file The snapshot file to write
+	 * @throws IOException If the file cannot be written, or a road of an intersection is not one of the roads of the world
+	 */
+	public static void write(Graph graph, World world, File file) throws IOException {
+		GraphStorage compactGraph = graph.getCompactGraph();
+		Intersection[] intersections = world.getIntersections();
+		Road[] worldRoads = world.getRoads();
+		int nodeCount = compactGraph.getNodeCount();
+		int edgeCount = compactGraph.getEdgeCount();
+		ByteBuffer buffer = ByteBuffer.allocate((int)fileSize(nodeCount, edgeCount));
+		int[] edgeRoads = new int[edgeCount];
+		FileChannel channel;
+		Road road;
+		Edge edge;
+		
+		Arrays.fill(edgeRoads, -1);
+		for(int i=0;i<worldRoads.length;i++){
+			edge = graph.getEdge(worldRoads[i]);
+			if(edge != null){
+				edgeRoads[edge.getId()] = i;
+			}
+		}for(int i=0;i<edgeCount;i++){
+			if(edgeRoads[i] == -1){
+				throw new IOException("Edge " + i + " is not one of the roads of the world");
+			}
+		}
+		
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMATVERSION);
+		buffer.putLong(fingerprint(world));
+		buffer.putInt(nodeCount);
+		buffer.putInt(edgeCount);
+		buffer.putInt(worldRoads.length);
+		for(int node=0;node<nodeCount;node++){
+			buffer.putDouble(compactGraph.getNodeX(node));
+			buffer.putDouble(compactGraph.getNodeY(node));
+		}for(Intersection intersection : intersections){
+			for(Direction direction : Direction.values()){
+				road = intersection.roads.get(direction);
+				buffer.putInt(road == null ? -1 : graph.getEdge(road).getId());
+			}
+		}for(int i=0;i<edgeCount;i++){
+			buffer.putInt(compactGraph.getEdgeStartNode(i));
+		}for(int i=0;i<edgeCount;i++){
+			buffer.putInt(compactGraph.getEdgeEndNode(i));
+		}for(int i=0;i<edgeCount;i++){
+			buffer.putDouble(compactGraph.getEdgeEndX(i));
+			buffer.putDouble(compactGraph.getEdgeEndY(i));
+		}for(int i=0;i<edgeCount;i++){
+			buffer.putInt(edgeRoads[i]);
+		}
+		buffer.flip();
+		
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try{
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+		}finally{
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Calculates a fingerprint of the intersections and roads of the world in the order the world holds them
+	 * The world connects roads to the intersections their ends meet, so the same positions and sizes give the same
+	 * connections and only the flat arrays are hashed rather than the roads of every intersection
+	 * @param world The world that contains the intersections and roads
+	 * @return The fingerprint of the world
+	 */
+	static long fingerprint(World world){
+		Intersection[] intersections = world.getIntersections();
+		Road[] roads = world.getRoads();
+		long hash = mix(FNVOFFSET, intersections.length);
+		
+		for(Intersection intersection : intersections){
+			hash = mix(hash, Double.doubleToLongBits(intersection.pos.getX()));
+			hash = mix(hash, Double.doubleToLongBits(intersection.pos.getY()));
+			hash = mix(hash, ((long)Float.floatToIntBits(intersection.width) << 32) | (Float.floatToIntBits(intersection.length) & 0xffffffffL));
+		}hash = mix(hash, roads.length);
+		for(Road road : roads){
+			hash = mix(hash, Double.doubleToLongBits(road.getStartPos().getX()));
+			hash = mix(hash, Double.doubleToLongBits(road.getStartPos().getY()));
+			hash = mix(hash, Double.doubleToLongBits(road.getEndPos().getX()));
+			hash = mix(hash, Double.doubleToLongBits(road.getEndPos().getY()));
+		}return hash;
+	}
+	
+	/**
+	 * Adds a value to a FNV-1a hash
+	 * @param hash The hash so far
+	 * @param value The value to add
+	 * @return The new hash
+	 */
+	private static long mix(long hash, long value){
+		return (hash ^ value)*FNVPRIME;
+	}
+	
+	/**
+	 * Returns whether the snapshot was built from the given world
+	 * @param world The world to check
+	 * @return True if the world has the same intersections and roads as when the snapshot was written
+	 */
+	boolean matches(World world){
+		Intersection[] intersections = world.getIntersections();
+		if(intersections.length != nodeCount || world.getRoads().length != roadCount || fingerprint(world) != fingerprint){
+			return false;
+		}
+		//Check the node positions as well in case two worlds share a fingerprint
+		for(int node=0;node<nodeCount;node++){
+			if(intersections[node].pos.getX() != nodePositions[2*node] || intersections[node].pos.getY() != nodePositions[(2*node)+1]){
+				return false;
+			}
+		}return true;
+	}
+	
+	/**
+	 * Creates the nodes and edges of the graph for the world and connects them as recorded in the snapshot
+	 * @param intersections The intersections of the world, in the order the snapshot was built in
+	 * @param roads The roads of the world, in the order the snapshot was built in
+	 * @param nodes The array to fill with the node of each intersection
+	 * @param intersectionNodes The map to fill with the node of each intersection
+	 * @param roadEdges The map to fill with the edge of each road
+	 * @return The edges of the graph indexed by edge id
+	 */
+	Edge[] connect(Intersection[] intersections, Road[] roads, Node[] nodes, HashMap<Intersection, Node> intersectionNodes, HashMap<Road, Edge> roadEdges){
+		Edge[] edges = new Edge[edgeCount];
+		int edge;
+		
+		for(int node=0;node<nodeCount;node++){
+			nodes[node] = new Node(intersections[node], node);
+			intersectionNodes.put(intersections[node], nodes[node]);
+		}for(edge=0;edge<edgeCount;edge++){
+			edges[edge] = new Edge(nodes[edgeStartNodes[edge]], edge);
+			roadEdges.put(roads[edgeRoads[edge]], edges[edge]);
+			if(edgeEndNodes[edge] != -1){
+				edges[edge].setEndNode(nodes[edgeEndNodes[edge]]);
+			}else{
+				edges[edge].setEndPosition(new Point2D.Double(edgeEndPositions[2*edge], edgeEndPositions[(2*edge)+1]));
+			}
+		}
+		//Add the roads to each intersection in the same direction order the graph was built in
+		for(int node=0;node<nodeCount;node++){
+			for(Direction direction : Direction.values()){
+				edge = this.roadEdges[(node*DIRECTIONCOUNT)+direction.ordinal()];
+				if(edge != -1){
+					nodes[node].addRoad(edges[edge]);
+				}
+			}
+		}for(edge=0;edge<edgeCount;edge++){
+			edges[edge].calculateGeometry();
+		}return edges;
+	}
+	
+	/**
+	 * Reads an array of ints from the buffer
+	 * @param buffer The buffer to read from
+	 * @param count The number of ints
+	 * @return The ints read
+	 */
+	private static int[] readInts(ByteBuffer buffer, int count){
+		int[] values = new int[count];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + (4*count));
+		return values;
+	}
+	
+	/**
+	 * Reads an array of doubles from the buffer
+	 * @param buffer The buffer to read from
+	 * @param count The number of doubles
+	 * @return The doubles read
+	 */
+	private static double[] readDoubles(ByteBuffer buffer, int count){
+		double[] values = new double[count];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + (8*count));
+		return values;
+	}
+}
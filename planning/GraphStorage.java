@@ -0,0 +1,115 @@
+package group26.planning;
+
+/**
+ * The id indexed layout of the road graph that every search runs against
+ * Node ids run from 0 to the node count, edge ids from 0 to the edge count, and the arcs leaving node i run from
+ * getFirstArc(i) up to getEndArc(i)
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public interface GraphStorage {
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return The number of nodes
+	 */
+	public int getNodeCount();
+	
+	/**
+	 * Returns the number of edges in the graph
+	 * @return The number of edges
+	 */
+	public int getEdgeCount();
+	
+	/**
+	 * Returns the x position of the node
+	 * @param node The node id
+	 * @return The x position of the intersection
+	 */
+	public double getNodeX(int node);
+	
+	/**
+	 * Returns the y position of the node
+	 * @param node The node id
+	 * @return The y position of the intersection
+	 */
+	public double getNodeY(int node);
+	
+	/**
+	 * Returns the first arc leaving the node
+	 * @param node The node id
+	 * @return The index of the first arc of the node
+	 */
+	public int getFirstArc(int node);
+	
+	/**
+	 * Returns the index after the last arc leaving the node
+	 * @param node The node id
+	 * @return The index one past the last arc of the node
+	 */
+	public int getEndArc(int node);
+	
+	/**
+	 * Returns the node at the other end of the arc
+	 * @param arc The arc index
+	 * @return The node id, or -1 if the road has no end intersection
+	 */
+	public int getArcTarget(int arc);
+	
+	/**
+	 * Returns the edge the arc travels along
+	 * @param arc The arc index
+	 * @return The edge id
+	 */
+	public int getArcEdge(int arc);
+	
+	/**
+	 * Returns the length of the edge
+	 * @param edge The edge id
+	 * @return The length of the road, or infinity if it has no end intersection
+	 */
+	public double getEdgeLength(int edge);
+	
+	/**
+	 * Returns the node the edge starts at
+	 * @param edge The edge id
+	 * @return The start node id
+	 */
+	public int getEdgeStartNode(int edge);
+	
+	/**
+	 * Returns the node the edge ends at
+	 * @param edge The edge id
+	 * @return The end node id, or -1 if the road has no end intersection
+	 */
+	public int getEdgeEndNode(int edge);
+	
+	/**
+	 * Returns the x position of the far end of the edge
+	 * @param edge The edge id
+	 * @return The x position of the end of the road
+	 */
+	public double getEdgeEndX(int edge);
+	
+	/**
+	 * Returns the y position of the far end of the edge
+	 * @param edge The edge id
+	 * @return The y position of the end of the road
+	 */
+	public double getEdgeEndY(int edge);
+	
+	/**
+	 * Returns the connected component the node belongs to
+	 * @param node The node id
+	 * @return The component id, equal for two nodes only if a route exists between them
+	 */
+	public int getComponent(int node);
+	
+	/**
+	 * Calculates the straight line distance from the node to the given position
+	 * @param node The node id
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The distance from the intersection to the position
+	 */
+	public double straightLineDistance(int node, double x, double y);
+}
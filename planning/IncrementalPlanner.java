@@ -0,0 +1,279 @@
+package group26.planning;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+
+/**
+ * Repairs a route incrementally using D* Lite when the cost of a road changes or the car leaves its route
+ * The search runs backwards from the destination, so the costs it has already found stay valid as the car
+ * moves and only the part of the search affected by a change is repeated when the route is repaired
+ * Each planner belongs to a single car and keeps its own changes to road costs
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class IncrementalPlanner {
+	//First keys closer than this are treated as equal so rounding cannot stop the search early
+	private static final double KEYTOLERANCE = 1e-6;
+	
+	//The graph the routes are planned on
+	private final Graph roadMap;
+	private final GraphStorage compactGraph;
+	//The cost of reaching the destination from each node, and the one step lookahead of that cost
+	private final double[] costs, lookaheadCosts;
+	//The cost of reaching the destination directly from each goal node, infinity for other nodes
+	private final double[] destinationCosts;
+	//The nodes with a cost of reaching the destination directly
+	private int[] goalNodes;
+	//The nodes whose costs are inconsistent
+	private final LexicographicHeap openSet;
+	//The cost of each road changed for this car indexed by edge id, NaN for roads that keep their length
+	private final double[] edgeCosts;
+	//Added to the keys as the car moves so keys already in the open set stay valid
+	private double keyModifier;
+	//The node the route starts from, and the node it started from when the keys were last valid
+	private int startNode, previousStartNode;
+	//The destination to be reached, null until a route has been planned
+	private Point2D.Double destination;
+	
+	/**
+	 * Constructor for the incremental planner
+	 * @param roadMap The graph the routes are planned on
+	 */
+	public IncrementalPlanner(Graph roadMap){
+		this.roadMap = roadMap;
+		this.compactGraph = roadMap.getCompactGraph();
+		this.costs = new double[compactGraph.getNodeCount()];
+		this.lookaheadCosts = new double[compactGraph.getNodeCount()];
+		this.destinationCosts = new double[compactGraph.getNodeCount()];
+		Arrays.fill(destinationCosts, Double.POSITIVE_INFINITY);
+		this.goalNodes = new int[0];
+		this.openSet = new LexicographicHeap(compactGraph.getNodeCount());
+		this.edgeCosts = new double[compactGraph.getEdgeCount()];
+		Arrays.fill(edgeCosts, Double.NaN);
+		this.destination = null;
+	}
+	
+	/**
+	 * Plans a new route from the given node to the destination, discarding any previous search
+	 * @param startingNode The node the route starts from
+	 * @param destination The destination to be reached
+	 * @return The route, or null if no valid route exists
+	 */
+	public PlannedPath planRoute(Node startingNode, Point2D.Double destination){
+		this.destination = destination;
+		this.startNode = startingNode.getId();
+		this.previousStartNode = startNode;
+		this.keyModifier = 0;
+		Arrays.fill(costs, Double.POSITIVE_INFINITY);
+		Arrays.fill(lookaheadCosts, Double.POSITIVE_INFINITY);
+		openSet.clear();
+		
+		//The goal nodes are the only nodes the destination can be reached from directly
+		for(int goalNode : goalNodes){
+			destinationCosts[goalNode] = Double.POSITIVE_INFINITY;
+		}goalNodes = roadMap.findGoalNodes(destination);
+		for(int goalNode : goalNodes){
+			destinationCosts[goalNode] = compactGraph.straightLineDistance(goalNode, destination.getX(), destination.getY());
+			lookaheadCosts[goalNode] = destinationCosts[goalNode];
+			queue(goalNode);
+		}
+		computeShortestPath();
+		return extractRoute();
+	}
+	
+	/**
+	 * Repairs the route after the car has moved to the given node or road costs have changed
+	 * @param currentNode The node the route now starts from
+	 * @return The repaired route, or null if no valid route exists
+	 */
+	public PlannedPath replanFrom(Node currentNode){
+		if(destination == null){
+			return null;
+		}
+		//Keys in the open set were calculated from the previous start, raise all future keys to match
+		startNode = currentNode.getId();
+		keyModifier += compactGraph.straightLineDistance(previousStartNode, compactGraph.getNodeX(startNode), compactGraph.getNodeY(startNode));
+		previousStartNode = startNode;
+		computeShortestPath();
+		return extractRoute();
+	}
+	
+	/**
+	 * Marks a road as blocked or clears the block, the route must then be repaired
+	 * @param edge The road that is blocked
+	 * @param blocked True if the road is blocked, false if it is clear
+	 */
+	public void setEdgeBlocked(Edge edge, boolean blocked){
+		if(blocked){
+			setEdgeCost(edge, Double.POSITIVE_INFINITY);
+		}else{
+			setEdgeCost(edge, compactGraph.getEdgeLength(edge.getId()));
+		}
+	}
+	
+	/**
+	 * Changes the cost of travelling along a road for this car, the route must then be repaired
+	 * @param edge The road whose cost has changed
+	 * @param cost The new cost of travelling along the road
+	 */
+	public void setEdgeCost(Edge edge, double cost){
+		int edgeId = edge.getId();
+		int endNode = compactGraph.getEdgeEndNode(edgeId);
+		
+		edgeCosts[edgeId] = cost;
+		if(destination != null && endNode != -1){
+			updateNode(compactGraph.getEdgeStartNode(edgeId));
+			updateNode(endNode);
+		}
+	}
+	
+	/**
+	 * Returns the cost of travelling along the road for this car
+	 * @param edge The edge id
+	 * @return The changed cost if the road has one, otherwise its length
+	 */
+	private double edgeCost(int edge){
+		double cost = edgeCosts[edge];
+		if(Double.isNaN(cost)){
+			return compactGraph.getEdgeLength(edge);
+		}return cost;
+	}
+	
+	/**
+	 * Settles the nodes in the open set until the cost of the starting node is consistent
+	 */
+	private void computeShortestPath(){
+		int node, neighbour;
+		double primaryKey, secondaryKey;
+		
+		while(!openSet.isEmpty() && (keyBefore(openSet.peekPrimaryKey(), openSet.peekSecondaryKey(), primaryKey(startNode), secondaryKey(startNode))
+				|| lookaheadCosts[startNode] != costs[startNode])){
+			node = openSet.peek();
+			primaryKey = primaryKey(node);
+			secondaryKey = secondaryKey(node);
+			if(keyBefore(openSet.peekPrimaryKey(), openSet.peekSecondaryKey(), primaryKey, secondaryKey)){
+				//The key was calculated before the car moved, queue it again with its current key
+				openSet.insertOrUpdate(node, primaryKey, secondaryKey);
+			}else if(costs[node] > lookaheadCosts[node]){
+				//The cost has dropped, settle it and update its neighbours
+				costs[node] = lookaheadCosts[node];
+				openSet.remove(node);
+				for(int arc=compactGraph.getFirstArc(node);arc<compactGraph.getEndArc(node);arc++){
+					neighbour = compactGraph.getArcTarget(arc);
+					if(neighbour != -1){
+						updateNode(neighbour);
+					}
+				}
+			}else{
+				//The cost has risen, forget it and update the node and its neighbours
+				costs[node] = Double.POSITIVE_INFINITY;
+				updateNode(node);
+				for(int arc=compactGraph.getFirstArc(node);arc<compactGraph.getEndArc(node);arc++){
+					neighbour = compactGraph.getArcTarget(arc);
+					if(neighbour != -1){
+						updateNode(neighbour);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Recalculates the lookahead cost of the node and queues it if it is inconsistent
+	 * @param node The node id
+	 */
+	private void updateNode(int node){
+		double lookaheadCost = destinationCosts[node];
+		int neighbour;
+		
+		for(int arc=compactGraph.getFirstArc(node);arc<compactGraph.getEndArc(node);arc++){
+			neighbour = compactGraph.getArcTarget(arc);
+			if(neighbour != -1){
+				lookaheadCost = Math.min(lookaheadCost, edgeCost(compactGraph.getArcEdge(arc)) + costs[neighbour]);
+			}
+		}lookaheadCosts[node] = lookaheadCost;
+		
+		openSet.remove(node);
+		if(costs[node] != lookaheadCosts[node]){
+			queue(node);
+		}
+	}
+	
+	/**
+	 * Adds the node to the open set with its current keys
+	 * @param node The node id
+	 */
+	private void queue(int node){
+		openSet.insertOrUpdate(node, primaryKey(node), secondaryKey(node));
+	}
+	
+	/**
+	 * Calculates the first key of the node, its cost plus the straight line distance from the start
+	 * @param node The node id
+	 * @return The first key
+	 */
+	private double primaryKey(int node){
+		return secondaryKey(node) + compactGraph.straightLineDistance(node, compactGraph.getNodeX(startNode), compactGraph.getNodeY(startNode)) + keyModifier;
+	}
+	
+	/**
+	 * Calculates the second key of the node, the smaller of its cost and lookahead cost
+	 * @param node The node id
+	 * @return The second key
+	 */
+	private double secondaryKey(int node){
+		return Math.min(costs[node], lookaheadCosts[node]);
+	}
+	
+	/**
+	 * Returns whether the first pair of keys comes before the second
+	 * @return True if the first keys are smaller
+	 */
+	private static boolean keyBefore(double firstPrimary, double firstSecondary, double secondPrimary, double secondSecondary){
+		if(Math.abs(firstPrimary-secondPrimary) > KEYTOLERANCE){
+			return firstPrimary < secondPrimary;
+		}return firstSecondary < secondSecondary;
+	}
+	
+	/**
+	 * Builds the route by following the cheapest neighbour from the start until the destination is cheapest to reach directly
+	 * @return The route, or null if the destination cannot be reached from the start
+	 */
+	private PlannedPath extractRoute(){
+		int[] routeNodes;
+		int length = 1;
+		int node = startNode;
+		int nextNode, neighbour;
+		double bestCost, cost;
+		
+		if(costs[startNode] == Double.POSITIVE_INFINITY){
+			return null;
+		}
+		routeNodes = new int[16];
+		routeNodes[0] = node;
+		//A route can never visit more nodes than the graph has, stop there in case of a cycle
+		for(int step=0;step<compactGraph.getNodeCount();step++){
+			bestCost = destinationCosts[node];
+			nextNode = -1;
+			for(int arc=compactGraph.getFirstArc(node);arc<compactGraph.getEndArc(node);arc++){
+				neighbour = compactGraph.getArcTarget(arc);
+				if(neighbour != -1){
+					cost = edgeCost(compactGraph.getArcEdge(arc)) + costs[neighbour];
+					if(cost < bestCost){
+						bestCost = cost;
+						nextNode = neighbour;
+					}
+				}
+			}if(nextNode == -1){
+				//Stopping anywhere but a goal node would mean the costs were not consistent
+				if(destinationCosts[node] == Double.POSITIVE_INFINITY){
+					return null;
+				}return new PlannedPath(roadMap, Arrays.copyOf(routeNodes, length));
+			}node = nextNode;
+			if(length == routeNodes.length){
+				routeNodes = Arrays.copyOf(routeNodes, 2*length);
+			}routeNodes[length] = node;
+			length++;
+		}return null;
+	}
+}
@@ -0,0 +1,177 @@
+package group26.planning;
+
+import java.util.Arrays;
+
+/**
+ * An indexed binary min heap of node ids ordered by a pair of keys, compared on the first key then the second
+ * Unlike the binary heap the key of a queued node may be raised as well as lowered and nodes may be removed,
+ * as incremental searches need when the cost of a road changes
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class LexicographicHeap {
+	//The node ids stored in heap order
+	private int[] heap;
+	//The keys of each node id
+	private double[] primaryKeys, secondaryKeys;
+	//The position of each node id in the heap, -1 if not in the heap
+	private int[] positions;
+	//The number of node ids in the heap
+	private int size;
+	
+	/**
+	 * Constructor for the heap
+	 * @param capacity The number of node ids that may be stored
+	 */
+	public LexicographicHeap(int capacity){
+		this.heap = new int[capacity];
+		this.primaryKeys = new double[capacity];
+		this.secondaryKeys = new double[capacity];
+		this.positions = new int[capacity];
+		Arrays.fill(positions, -1);
+		this.size = 0;
+	}
+	
+	/**
+	 * Returns whether the heap is empty
+	 * @return True if the heap contains no node ids
+	 */
+	public boolean isEmpty(){
+		return size == 0;
+	}
+	
+	/**
+	 * Returns whether the given node id is in the heap
+	 * @param id The node id
+	 * @return True if the node id is waiting in the heap
+	 */
+	public boolean contains(int id){
+		return positions[id] != -1;
+	}
+	
+	/**
+	 * Returns the node id with the smallest keys without removing it
+	 * @return The node id at the top of the heap
+	 */
+	public int peek(){
+		return heap[0];
+	}
+	
+	/**
+	 * Returns the first key of the node id with the smallest keys
+	 * @return The first key, or infinity if the heap is empty
+	 */
+	public double peekPrimaryKey(){
+		if(size == 0){
+			return Double.POSITIVE_INFINITY;
+		}return primaryKeys[heap[0]];
+	}
+	
+	/**
+	 * Returns the second key of the node id with the smallest keys
+	 * @return The second key, or infinity if the heap is empty
+	 */
+	public double peekSecondaryKey(){
+		if(size == 0){
+			return Double.POSITIVE_INFINITY;
+		}return secondaryKeys[heap[0]];
+	}
+	
+	/**
+	 * Adds the node id to the heap or changes its keys if it is already in the heap
+	 * @param id The node id
+	 * @param primaryKey The first key
+	 * @param secondaryKey The second key, used when the first keys are equal
+	 */
+	public void insertOrUpdate(int id, double primaryKey, double secondaryKey){
+		int position = positions[id];
+		if(position == -1){
+			position = size;
+			size++;
+			heap[position] = id;
+			positions[id] = position;
+		}primaryKeys[id] = primaryKey;
+		secondaryKeys[id] = secondaryKey;
+		siftUp(position);
+		siftDown(positions[id]);
+	}
+	
+	/**
+	 * Removes the node id from the heap if it is in the heap
+	 * @param id The node id
+	 */
+	public void remove(int id){
+		int position = positions[id];
+		int moved;
+		if(position == -1){
+			return;
+		}size--;
+		positions[id] = -1;
+		if(position < size){
+			//Fill the gap with the last node id and move it up or down to where it belongs
+			moved = heap[size];
+			heap[position] = moved;
+			positions[moved] = position;
+			siftUp(position);
+			siftDown(positions[moved]);
+		}
+	}
+	
+	/**
+	 * Removes all node ids from the heap, only touches the ids that are still queued
+	 */
+	public void clear(){
+		for(int i=0;i<size;i++){
+			positions[heap[i]] = -1;
+		}size = 0;
+	}
+	
+	/**
+	 * Returns whether the first node id has smaller keys than the second
+	 * @param first The first node id
+	 * @param second The second node id
+	 * @return True if the first node id comes before the second
+	 */
+	private boolean before(int first, int second){
+		if(primaryKeys[first] != primaryKeys[second]){
+			return primaryKeys[first] < primaryKeys[second];
+		}return secondaryKeys[first] < secondaryKeys[second];
+	}
+	
+	/**
+	 * Moves the node id at the given position up the heap until its parent has smaller keys
+	 * @param position The position in the heap
+	 */
+	private void siftUp(int position){
+		int id = heap[position];
+		int parent;
+		while(position > 0){
+			parent = (position-1)/2;
+			if(!before(id, heap[parent])){
+				break;
+			}heap[position] = heap[parent];
+			positions[heap[position]] = position;
+			position = parent;
+		}heap[position] = id;
+		positions[id] = position;
+	}
+	
+	/**
+	 * Moves the node id at the given position down the heap until its children have larger keys
+	 * @param position The position in the heap
+	 */
+	private void siftDown(int position){
+		int id = heap[position];
+		int child;
+		while((child = (2*position)+1) < size){
+			if(child+1 < size && before(heap[child+1], heap[child])){
+				child++;
+			}if(!before(heap[child], id)){
+				break;
+			}heap[position] = heap[child];
+			positions[heap[position]] = position;
+			position = child;
+		}heap[position] = id;
+		positions[id] = position;
+	}
+}
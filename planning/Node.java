@@ -11,10 +11,10 @@ import com.unimelb.swen30006.partc.roads.Intersection;
  *
  */
 public class Node {
+	//The index of the node in the compact graph
+	private final int id;
 	//The roads connected to the intersection
 	private ArrayList<Edge> roadsStarting;
-	//Indicates whether the node has been visited in this search already
-	private boolean visited;
 	//The position of the intersection
 	private Point2D.Double position;
 	//The width and length of the intersection
@@ -23,15 +23,24 @@ public class Node {
 	/**
 	 * A constructor for the node
 	 * @param intersection The intersection the node represents
+	 * @param id The index of the node in the compact graph
 	 */
-	public Node(Intersection intersection) {
+	public Node(Intersection intersection, int id) {
+		this.id = id;
 		this.position = intersection.pos;
-		this.visited = false;
 		this.roadsStarting = new ArrayList<Edge>();
 		this.width = intersection.width;
 		this.length = intersection.length;
 	}
 	
+	/**
+	 * Returns the index of the node in the compact graph
+	 * @return The id of the node
+	 */
+	public int getId(){
+		return this.id;
+	}
+	
 	/**
 	 * Returns the length of the intersection
 	 * @return The length of the intersection
@@ -64,28 +73,6 @@ public class Node {
 		return roadsStarting;
 	}
 	
-	/**
-	 * Returns whether the node has been visited this search or not
-	 * @return Boolean indicating if the node has been visited
-	 */
-	public boolean getVisited(){
-		return visited;
-	}
-	
-	/**
-	 * Sets visited to true
-	 */
-	public void setVisited(){
-		this.visited = true;
-	}
-	
-	/**
-	 * Sets visited to false
-	 */
-	public void setUnvisited(){
-		this.visited = false;
-	}
-	
 	/**
 	 * Calculates the straight line distance from the node to the destination
 	 * @param destination The destination the distance is calculated from
@@ -102,7 +89,11 @@ public class Node {
 		return straightLineDistance;		
 	}
 	
-	public void addRoad(Edge edge){
+	/**
+	 * Adds a road to the intersection while the graph is being built
+	 * @param edge The road connected to the intersection
+	 */
+	void addRoad(Edge edge){
 		roadsStarting.add(edge);
 	}
 	
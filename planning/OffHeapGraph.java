@@ -0,0 +1,217 @@
+package group26.planning;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A copy of the adjacency arrays of the road graph kept in direct byte buffers outside the Java heap, for maps
+ * large enough that the arrays of the compact graph lengthen garbage collection
+ * Only these arrays leave the heap, the Node and Edge objects, road maps, edge index and travel time models of the
+ * graph stay on it, so on a map of 100,000 intersections the heap kept by the graph only falls by about a sixth
+ * The compact graph the buffers are copied from is garbage once the copy is made
+ * Each node, arc and edge is a fixed size record so the fields a search reads together sit next to each other
+ * A node record holds its x and y position, first arc and component, with one extra record after the last node
+ * holding the end of its arcs. An arc record holds the target node and edge. An edge record holds the length,
+ * the x and y end position, the start node and the end node
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class OffHeapGraph implements GraphStorage {
+	//The size of each record in bytes
+	private static final int NODESIZE = 24;
+	private static final int ARCSIZE = 8;
+	private static final int EDGESIZE = 32;
+	//The offset of each field within a node record
+	private static final int NODEX = 0, NODEY = 8, NODEFIRSTARC = 16, NODECOMPONENT = 20;
+	//The offset of each field within an arc record
+	private static final int ARCTARGET = 0, ARCEDGE = 4;
+	//The offset of each field within an edge record
+	private static final int EDGELENGTH = 0, EDGEENDX = 8, EDGEENDY = 16, EDGESTARTNODE = 24, EDGEENDNODE = 28;
+	
+	//The number of intersections and roads
+	private final int nodeCount, edgeCount;
+	//The node, arc and edge records
+	private final ByteBuffer nodeData, arcData, edgeData;
+	
+	/**
+	 * Constructor for the off heap graph, copies the graph into direct buffers
+	 * @param source The graph to copy
+	 */
+	public OffHeapGraph(GraphStorage source){
+		int arcCount;
+		int record;
+		
+		this.nodeCount = source.getNodeCount();
+		this.edgeCount = source.getEdgeCount();
+		arcCount = nodeCount == 0 ? 0 : source.getEndArc(nodeCount-1);
+		this.nodeData = ByteBuffer.allocateDirect((nodeCount+1)*NODESIZE).order(ByteOrder.nativeOrder());
+		this.arcData = ByteBuffer.allocateDirect(arcCount*ARCSIZE).order(ByteOrder.nativeOrder());
+		this.edgeData = ByteBuffer.allocateDirect(edgeCount*EDGESIZE).order(ByteOrder.nativeOrder());
+		
+		for(int node=0;node<nodeCount;node++){
+			record = node*NODESIZE;
+			nodeData.putDouble(record+NODEX, source.getNodeX(node));
+			nodeData.putDouble(record+NODEY, source.getNodeY(node));
+			nodeData.putInt(record+NODEFIRSTARC, source.getFirstArc(node));
+			nodeData.putInt(record+NODECOMPONENT, source.getComponent(node));
+		}nodeData.putInt((nodeCount*NODESIZE)+NODEFIRSTARC, arcCount);
+		for(int arc=0;arc<arcCount;arc++){
+			record = arc*ARCSIZE;
+			arcData.putInt(record+ARCTARGET, source.getArcTarget(arc));
+			arcData.putInt(record+ARCEDGE, source.getArcEdge(arc));
+		}for(int edge=0;edge<edgeCount;edge++){
+			record = edge*EDGESIZE;
+			edgeData.putDouble(record+EDGELENGTH, source.getEdgeLength(edge));
+			edgeData.putDouble(record+EDGEENDX, source.getEdgeEndX(edge));
+			edgeData.putDouble(record+EDGEENDY, source.getEdgeEndY(edge));
+			edgeData.putInt(record+EDGESTARTNODE, source.getEdgeStartNode(edge));
+			edgeData.putInt(record+EDGEENDNODE, source.getEdgeEndNode(edge));
+		}
+	}
+	
+	/**
+	 * Returns the memory held outside the heap by the graph
+	 * @return The size of the buffers in bytes
+	 */
+	public long getMemoryUsage(){
+		return (long)nodeData.capacity() + arcData.capacity() + edgeData.capacity();
+	}
+	
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return The number of nodes
+	 */
+	public int getNodeCount(){
+		return nodeCount;
+	}
+	
+	/**
+	 * Returns the number of edges in the graph
+	 * @return The number of edges
+	 */
+	public int getEdgeCount(){
+		return edgeCount;
+	}
+	
+	/**
+	 * Returns the x position of the node
+	 * @param node The node id
+	 * @return The x position of the intersection
+	 */
+	public double getNodeX(int node){
+		return nodeData.getDouble((node*NODESIZE)+NODEX);
+	}
+	
+	/**
+	 * Returns the y position of the node
+	 * @param node The node id
+	 * @return The y position of the intersection
+	 */
+	public double getNodeY(int node){
+		return nodeData.getDouble((node*NODESIZE)+NODEY);
+	}
+	
+	/**
+	 * Returns the first arc leaving the node
+	 * @param node The node id
+	 * @return The index of the first arc of the node
+	 */
+	public int getFirstArc(int node){
+		return nodeData.getInt((node*NODESIZE)+NODEFIRSTARC);
+	}
+	
+	/**
+	 * Returns the index after the last arc leaving the node
+	 * @param node The node id
+	 * @return The index one past the last arc of the node
+	 */
+	public int getEndArc(int node){
+		return nodeData.getInt(((node+1)*NODESIZE)+NODEFIRSTARC);
+	}
+	
+	/**
+	 * Returns the node at the other end of the arc
+	 * @param arc The arc index
+	 * @return The node id, or -1 if the road has no end intersection
+	 */
+	public int getArcTarget(int arc){
+		return arcData.getInt((arc*ARCSIZE)+ARCTARGET);
+	}
+	
+	/**
+	 * Returns the edge the arc travels along
+	 * @param arc The arc index
+	 * @return The edge id
+	 */
+	public int getArcEdge(int arc){
+		return arcData.getInt((arc*ARCSIZE)+ARCEDGE);
+	}
+	
+	/**
+	 * Returns the length of the edge
+	 * @param edge The edge id
+	 * @return The length of the road, or infinity if it has no end intersection
+	 */
+	public double getEdgeLength(int edge){
+		return edgeData.getDouble((edge*EDGESIZE)+EDGELENGTH);
+	}
+	
+	/**
+	 * Returns the node the edge starts at
+	 * @param edge The edge id
+	 * @return The start node id
+	 */
+	public int getEdgeStartNode(int edge){
+		return edgeData.getInt((edge*EDGESIZE)+EDGESTARTNODE);
+	}
+	
+	/**
+	 * Returns the node the edge ends at
+	 * @param edge The edge id
+	 * @return The end node id, or -1 if the road has no end intersection
+	 */
+	public int getEdgeEndNode(int edge){
+		return edgeData.getInt((edge*EDGESIZE)+EDGEENDNODE);
+	}
+	
+	/**
+	 * Returns the x position of the far end of the edge
+	 * @param edge The edge id
+	 * @return The x position of the end of the road
+	 */
+	public double getEdgeEndX(int edge){
+		return edgeData.getDouble((edge*EDGESIZE)+EDGEENDX);
+	}
+	
+	/**
+	 * Returns the y position of the far end of the edge
+	 * @param edge The edge id
+	 * @return The y position of the end of the road
+	 */
+	public double getEdgeEndY(int edge){
+		return edgeData.getDouble((edge*EDGESIZE)+EDGEENDY);
+	}
+	
+	/**
+	 * Returns the connected component the node belongs to
+	 * @param node The node id
+	 * @return The component id, equal for two nodes only if a route exists between them
+	 */
+	public int getComponent(int node){
+		return nodeData.getInt((node*NODESIZE)+NODECOMPONENT);
+	}
+	
+	/**
+	 * Calculates the straight line distance from the node to the given position
+	 * @param node The node id
+	 * @param x The x position
+	 * @param y The y position
+	 * @return The distance from the intersection to the position
+	 */
+	public double straightLineDistance(int node, double x, double y){
+		int record = node*NODESIZE;
+		double xDif = x - nodeData.getDouble(record+NODEX);
+		double yDif = y - nodeData.getDouble(record+NODEY);
+		return Math.sqrt((xDif*xDif)+(yDif*yDif));
+	}
+}
@@ -0,0 +1,159 @@
+package group26.planning;
+
+import java.util.Arrays;
+
+import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse;
+import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse.Classification;
+
+/**
+ * Classifies the perception results in a single pass each update, collecting the traffic lights for the
+ * road rule handler and the most urgent collision threats for the collision handler
+ * The perception results are never reordered and the buffers are reused between updates
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class PerceptionTriage {
+	//The number of collision threats kept each update
+	private static final int MAXTHREATS = 8;
+	//The time to collision reported for objects the car is not on course to hit
+	private static final float NOCOLLISION = -1;
+	private static final int INITIALTRAFFICLIGHTCAPACITY = 8;
+	
+	//The traffic lights in the latest perception results
+	private PerceptionResponse[] trafficLights;
+	private int trafficLightCount;
+	//The objects with the smallest time to collision, kept as a max heap on time to collision while triaging
+	private PerceptionResponse[] threats;
+	private int threatCount;
+	//The number of other vehicles in the latest perception results
+	private int vehicleCount;
+	
+	/**
+	 * Constructor for the perception triage
+	 */
+	public PerceptionTriage(){
+		this.trafficLights = new PerceptionResponse[INITIALTRAFFICLIGHTCAPACITY];
+		this.trafficLightCount = 0;
+		this.threats = new PerceptionResponse[MAXTHREATS];
+		this.threatCount = 0;
+		this.vehicleCount = 0;
+	}
+	
+	/**
+	 * Classifies each of the perception results once
+	 * @param results The latest perception results from the perception subsystem
+	 */
+	public void triage(PerceptionResponse[] results){
+		trafficLightCount = 0;
+		threatCount = 0;
+		vehicleCount = 0;
+		for(PerceptionResponse result : results){
+			if(result.objectType == Classification.TrafficLight){
+				addTrafficLight(result);
+			}else if(result.objectType == Classification.Car){
+				vehicleCount++;
+			}if(result.timeToCollision > NOCOLLISION){
+				addThreat(result);
+			}
+		}sortThreats();
+	}
+	
+	/**
+	 * Returns the traffic lights in the latest perception results
+	 * @return The traffic light buffer, only the first traffic light count entries are valid
+	 */
+	public PerceptionResponse[] getTrafficLights(){
+		return trafficLights;
+	}
+	
+	/**
+	 * Returns the number of traffic lights in the latest perception results
+	 * @return The number of traffic lights
+	 */
+	public int getTrafficLightCount(){
+		return trafficLightCount;
+	}
+	
+	/**
+	 * Returns the most urgent collision threats sorted by time to collision
+	 * @return The threat buffer, only the first threat count entries are valid
+	 */
+	public PerceptionResponse[] getThreats(){
+		return threats;
+	}
+	
+	/**
+	 * Returns the number of collision threats kept
+	 * @return The number of threats
+	 */
+	public int getThreatCount(){
+		return threatCount;
+	}
+	
+	/**
+	 * Returns the number of other vehicles in the latest perception results
+	 * @return The number of vehicles
+	 */
+	public int getVehicleCount(){
+		return vehicleCount;
+	}
+	
+	/**
+	 * Adds a traffic light to the reused traffic light buffer, only growing the buffer
+	 * when more lights are seen at once than ever before
+	 * @param trafficLight The perceived traffic light
+	 */
+	private void addTrafficLight(PerceptionResponse trafficLight){
+		if(trafficLightCount == trafficLights.length){
+			trafficLights = Arrays.copyOf(trafficLights, trafficLights.length*2);
+		}trafficLights[trafficLightCount] = trafficLight;
+		trafficLightCount++;
+	}
+	
+	/**
+	 * Keeps the threat if it is one of the most urgent seen so far this update
+	 * The least urgent kept threat is at the top of the heap so it can be replaced
+	 * @param threat The perceived object on course for a collision
+	 */
+	private void addThreat(PerceptionResponse threat){
+		int position, parent, child;
+		
+		if(threatCount < MAXTHREATS){
+			//Sift the new threat up from the bottom of the heap
+			position = threatCount;
+			threatCount++;
+			while(position > 0){
+				parent = (position-1)/2;
+				if(threats[parent].timeToCollision >= threat.timeToCollision){
+					break;
+				}threats[position] = threats[parent];
+				position = parent;
+			}threats[position] = threat;
+		}else if(threat.timeToCollision < threats[0].timeToCollision){
+			//Replace the least urgent threat and sift it down
+			position = 0;
+			while((child = (2*position)+1) < threatCount){
+				if(child+1 < threatCount && threats[child+1].timeToCollision > threats[child].timeToCollision){
+					child++;
+				}if(threat.timeToCollision >= threats[child].timeToCollision){
+					break;
+				}threats[position] = threats[child];
+				position = child;
+			}threats[position] = threat;
+		}
+	}
+	
+	/**
+	 * Sorts the kept threats so the most urgent is first
+	 */
+	private void sortThreats(){
+		PerceptionResponse threat;
+		int j;
+		for(int i=1;i<threatCount;i++){
+			threat = threats[i];
+			for(j=i;j>0 && threats[j-1].timeToCollision > threat.timeToCollision;j--){
+				threats[j] = threats[j-1];
+			}threats[j] = threat;
+		}
+	}
+}
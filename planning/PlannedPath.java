@@ -0,0 +1,120 @@
+package group26.planning;
+
+import java.awt.geom.Point2D;
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * An immutable route through the graph, stored as the ids of the intersections in the order they are travelled
+ * The distance along the route to each intersection is calculated once when the route is built, so a planned path
+ * may be shared by every car taking the same route, each following it with its own position on the route
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public final class PlannedPath {
+	//The graph the route was planned on
+	private final Graph roadMap;
+	//The id of each intersection on the route in the order they are travelled
+	private final int[] nodeIds;
+	//The distance along the route from the first intersection to each intersection
+	private final double[] distances;
+	
+	/**
+	 * Constructor for the planned path
+	 * @param roadMap The graph the route was planned on
+	 * @param nodeIds The ids of the intersections on the route in the order they are travelled, must not be changed
+	 */
+	PlannedPath(Graph roadMap, int[] nodeIds){
+		this.roadMap = roadMap;
+		this.nodeIds = nodeIds;
+		this.distances = new double[nodeIds.length];
+		for(int i=1;i<nodeIds.length;i++){
+			distances[i] = distances[i-1] + intersectionDistance(roadMap.getNode(nodeIds[i-1]).getPosition(), roadMap.getNode(nodeIds[i]).getPosition());
+		}
+	}
+	
+	/**
+	 * Calculates the distance along the road between two intersections
+	 * @param start The position of the first intersection
+	 * @param end The position of the second intersection
+	 * @return The distance between the intersections
+	 */
+	static double intersectionDistance(Point2D.Double start, Point2D.Double end){
+		if(start.getX()==end.getX()){
+			return Math.abs(start.getY()-end.getY());
+		}else{
+			return Math.abs(start.getX()-end.getX());
+		}
+	}
+	
+	/**
+	 * Returns the number of intersections on the route
+	 * @return The length of the route in intersections
+	 */
+	public int size(){
+		return nodeIds.length;
+	}
+	
+	/**
+	 * Returns the id of an intersection on the route
+	 * @param index The position of the intersection on the route
+	 * @return The node id
+	 */
+	public int getNodeId(int index){
+		return nodeIds[index];
+	}
+	
+	/**
+	 * Returns an intersection on the route
+	 * @param index The position of the intersection on the route
+	 * @return The node
+	 */
+	public Node getNode(int index){
+		return roadMap.getNode(nodeIds[index]);
+	}
+	
+	/**
+	 * Returns the final intersection on the route
+	 * @return The node the destination is reached from
+	 */
+	public Node getLastNode(){
+		return roadMap.getNode(nodeIds[nodeIds.length-1]);
+	}
+	
+	/**
+	 * Returns the distance along the route from the first intersection to an intersection on the route
+	 * @param index The position of the intersection on the route
+	 * @return The distance to the intersection
+	 */
+	public double getDistance(int index){
+		return distances[index];
+	}
+	
+	/**
+	 * Returns the distance along the route from the first intersection to the final intersection
+	 * @return The length of the route
+	 */
+	public double getLength(){
+		if(distances.length == 0){
+			return 0;
+		}return distances[distances.length-1];
+	}
+	
+	/**
+	 * Returns a read only list of the intersections on the route, backed by the route
+	 * @return The nodes on the route in the order they are travelled
+	 */
+	public List<Node> asList(){
+		return new AbstractList<Node>(){
+			@Override
+			public Node get(int index){
+				return getNode(index);
+			}
+			
+			@Override
+			public int size(){
+				return nodeIds.length;
+			}
+		};
+	}
+}
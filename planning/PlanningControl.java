@@ -2,12 +2,11 @@ package group26.planning;
 
 import java.awt.geom.Point2D;
 import java.awt.geom.Point2D.Double;
-import java.util.ArrayList;
 
 import com.unimelb.swen30006.partc.ai.interfaces.IPlanning;
 import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse;
-import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse.Classification;
 import com.unimelb.swen30006.partc.core.World;
+import com.unimelb.swen30006.partc.core.infrastructure.TrafficLight;
 import com.unimelb.swen30006.partc.core.objects.Car;
 import com.unimelb.swen30006.partc.roads.Road;
 
@@ -19,26 +18,31 @@ import com.unimelb.swen30006.partc.roads.Road;
  */
 public class PlanningControl implements IPlanning{
 	//Constants used in the update method
-	private final int ACCELERATE = 1;
 	private final int BRAKE = -1;
 	private final int MAXINTERSECTIONSIZE = 30;
-	private final int AVERAGESPEED = 40;
 	
 	//Objects from the simulation used in planning
 	private World world;
 	private Car car;
 	
+	//The graph of the roads shared by every car in the world
+	private Graph graph;
 	//Stores a graph of the roads and calculates the route
 	private Route route;
 	//Handles input to the car
 	private CarController controller;
+	//Plans the speed the car travels at so it slows smoothly for the lights, turns and vehicles ahead
+	private SpeedProfilePlanner speedProfilePlanner;
 	//Handles collision scenarios for the car
     private CollisionHandler collisionHandler;
     //Handles only traffic light responses currently
     private RoadRuleHandler roadRuleHandler;
 
-	//The current position of the car
+	//The current position of the car, the coordinates are read once per update
 	private Point2D.Double currentPosition;
+	private double currentX, currentY;
+	//Classifies the perception results for the handlers each update
+	private PerceptionTriage perceptionTriage;
 	//The current direction the car is traveling in
 	private Direction currentDirection;
 	//The direction of the next intersection
@@ -52,6 +56,33 @@ public class PlanningControl implements IPlanning{
 	private Point2D.Double prevIntersection;
 	//Indicates whether the destination has been reached
 	private boolean destinationReached;
+	//The input decided on for the car in the latest update, applied separately from the decision
+	private int decidedAngle;
+	private float decidedAcceleration;
+	private boolean decisionMade;
+	//The congestion observed since the car left the previous intersection, reported once the next one is reached
+	private float vehicleCountTotal;
+	private int vehicleObservations;
+	private float lightDwell;
+	//The point between the previous and next intersections used to find the road the car travelled along
+	private Point2D.Double roadMidpoint;
+	//The time since the car left the previous intersection and the turn it made there, reported to the ETA model
+	private float legTime;
+	private EtaModel.Turn legTurn;
+	//The observations of the road just travelled, recorded while deciding and reported to the graph when applied
+	private boolean roadReportPending;
+	private Road reportedRoad;
+	private int reportedEdge, reportedNode, reportedObservations;
+	private float reportedVehicleCount, reportedLightDwell, reportedLegTime;
+	private EtaModel.Turn reportedTurn;
+	//The traffic light observed while deciding, reported to the signal phase model when applied
+	private boolean lightReportPending;
+	private int reportedLightNode, reportedApproach;
+	private TrafficLight.State reportedLightState;
+	//The simulation time the car has been updated to, built up from the time passed in each update
+	private double simulationTime;
+	//The turn the car makes at the intersection it is travelling towards
+	private EtaModel.Turn upcomingTurn;
 	
 	//Specifies the directions the car can travel in
 	private enum Direction {
@@ -67,8 +98,15 @@ public class PlanningControl implements IPlanning{
 		this.world = world;
 		this.car = car;
 		this.controller = new CarController(car);
-		this.currentPosition = car.getPosition();
-		this.route = new Route(world);
+		this.speedProfilePlanner = new SpeedProfilePlanner();
+		this.updatePosition();
+		this.perceptionTriage = new PerceptionTriage();
+		this.graph = GraphCache.getGraph(world);
+		this.simulationTime = graph.getSimulationTime();
+		this.route = new Route(graph);
+		this.roadMidpoint = new Point2D.Double();
+		this.legTurn = EtaModel.Turn.Straight;
+		this.upcomingTurn = EtaModel.Turn.Straight;
 		this.collisionHandler = new CollisionHandler();
 		this.roadRuleHandler = new RoadRuleHandler();
 		this.currentDirection = Direction.East;
@@ -82,13 +120,17 @@ public class PlanningControl implements IPlanning{
 	 */
 	public boolean planRoute(Double destination) {
 		boolean validRoute;
-		Road startingRoad = world.roadAtPoint(car.getPosition());
+		Road startingRoad;
+		
+		this.updatePosition();
+		startingRoad = world.roadAtPoint(currentPosition);
 		validRoute = route.planRoute(startingRoad, destination);
 		
 		if(validRoute){
 			this.destination = destination;
 			positionOfnextIntersection = route.nextIntersectionPosition();
 			setNextIntersectionDirection();
+			setUpcomingTurn();
 			destinationReached = false;
 		}else{
 			System.out.println("No valid route found to destination");
@@ -97,20 +139,55 @@ public class PlanningControl implements IPlanning{
 	}
 	
 	/**
-	 * Calculates an ETA for the remaining journey based on the distance remaining
+	 * Repairs the route around a road the car has found to be blocked
+	 * @param blockedRoad The road that is blocked
+	 * @return Boolean indicating whether there is still a valid route to the destination
+	 */
+	public boolean reportBlockedRoad(Road blockedRoad){
+		if(destination == null){
+			return false;
+		}return followRepairedRoute(route.blockRoad(blockedRoad, world.roadAtPoint(car.getPosition())));
+	}
+	
+	/**
+	 * Repairs the route from the road the car is on after it has left the planned route
+	 * @return Boolean indicating whether there is still a valid route to the destination
+	 */
+	public boolean rerouteFromCurrentRoad(){
+		if(destination == null){
+			return false;
+		}return followRepairedRoute(route.rerouteFrom(world.roadAtPoint(car.getPosition())));
+	}
+	
+	/**
+	 * Starts following a repaired route towards its first intersection
+	 * @param validRoute Indicates whether the route was repaired
+	 * @return Boolean indicating whether there is still a valid route to the destination
+	 */
+	private boolean followRepairedRoute(boolean validRoute){
+		if(validRoute){
+			this.updatePosition();
+			positionOfnextIntersection = route.nextIntersectionPosition();
+			setNextIntersectionDirection();
+			setUpcomingTurn();
+			destinationReached = false;
+		}else{
+			System.out.println("No valid route found to destination");
+		}return validRoute;
+	}
+	
+	/**
+	 * Calculates an ETA for the remaining journey from the expected road, traffic light and turn times learned
+	 * by the ETA model, the road to the next intersection is driven at the car's own speed if it is faster
 	 * @return The time to destination in seconds
 	 */
 	public float eta() {
-		float routeDistance=0;
-		float distanceToNextIntersection=0;
-		float totalDistance;
-		
-		if(positionOfnextIntersection != null){
-			routeDistance = (float)route.distanceToDestination();
-			distanceToNextIntersection = distanceToNextIntersection();
-		}totalDistance = routeDistance + distanceToNextIntersection;
+		double speed;
 		
-		return totalDistance/AVERAGESPEED;
+		if(positionOfnextIntersection == null){
+			return 0;
+		}speed = Math.max(car.getVelocity().len(), graph.getEtaModel().getCruiseSpeed());
+		return (float)((distanceToNextIntersection()/speed) + route.timeToDestination());
 	}
 
 	/**
@@ -122,44 +199,67 @@ public class PlanningControl implements IPlanning{
 	 * @param delta The amount of time passed since the last update
 	 */
 	public void update(PerceptionResponse[] results, float delta) {
-		//Update the current position
-		this.currentPosition = car.getPosition();
+		decide(results, delta);
+		apply(delta);
+	}
+	
+	/**
+	 * Decides how the car should be driven this update and advances the route, without changing the car
+	 * Only reads the car and the shared graph, so the decisions of many cars may be made in parallel,
+	 * observations for the shared graph are recorded on the car and only reported when the decision is applied
+	 * @param results The latest perception results from the perception subsystem
+	 * @param delta The amount of time passed since the last update
+	 */
+	public void decide(PerceptionResponse[] results, float delta) {
+		decisionMade = false;
+		
+		//Update the current position, and the clock from the time shared by every car on the graph
+		this.updatePosition();
+		this.simulationTime = Math.max(simulationTime + delta, graph.getSimulationTime());
 		
 		//Used for calculating how far into an intersection the car is
 		double axisDif;
+		boolean stoppedForLight;
 		
 		//If no route has been selected then do nothing
 		if(destination == null){
 			return;
 		}
 		
+		decisionMade = true;
+		legTime += delta;
+		decidedAngle = getDirectionAngle(currentDirection);
+		speedProfilePlanner.observe(car.getVelocity().len(), delta, controller.getAppliedInput());
 		if(results==null){
 			if(!destinationReached){
-				controller.adjustCar(getDirectionAngle(currentDirection), ACCELERATE);
+				decidedAcceleration = speedProfilePlanner.accelerationFor(targetSpeed(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY), car.getVelocity().len());
 		    }else{
-			    controller.adjustCar(getDirectionAngle(currentDirection), BRAKE);
+			    decidedAcceleration = BRAKE;
 			}
 		}else{
-			//Sorting the perception response to handle the highest priority
-			PerceptionResponse[] sortedResponse = prioritisePerceptionResponse(results); 
+			//Classify the perception results once for both handlers
+			perceptionTriage.triage(results);
 			
-			//Updating the collision handler
-			collisionHandler.update(sortedResponse);
+			//Updating the collision handler with the most urgent threats
+			collisionHandler.update(perceptionTriage.getThreats(), perceptionTriage.getThreatCount());
 			
-			//Getting traffic lights for road rule handler
-			ArrayList<PerceptionResponse> trafficLights = new ArrayList<PerceptionResponse>();
-			for(PerceptionResponse worldObject : results){
-				if(worldObject.objectType == Classification.TrafficLight){
-					trafficLights.add(worldObject);
-				}
-			}//Updating road rule handler
-			roadRuleHandler.update(trafficLights);
+			//Updating road rule handler with the traffic lights
+			roadRuleHandler.update(perceptionTriage.getTrafficLights(), perceptionTriage.getTrafficLightCount());
+			recordTrafficLight();
 			
 
-			if(!destinationReached && !collisionHandler.collisionImminent() && !roadRuleHandler.checkForStop()){
-				controller.adjustCar(getDirectionAngle(currentDirection), ACCELERATE);
+			//Record the congestion on the current road for the congestion model
+			stoppedForLight = roadRuleHandler.checkForStop();
+			vehicleCountTotal += perceptionTriage.getVehicleCount();
+			vehicleObservations++;
+			if(stoppedForLight){
+				lightDwell += delta;
+			}
+
+			if(!destinationReached && !collisionHandler.collisionImminent() && !stoppedForLight){
+				decidedAcceleration = speedProfilePlanner.accelerationFor(targetSpeed(roadRuleHandler.getStopDistance(), collisionHandler.getTimeToCollision()), car.getVelocity().len());
 		    }else{
-			    controller.adjustCar(getDirectionAngle(currentDirection), BRAKE);
+			    decidedAcceleration = BRAKE;
 			}
 		}
 		
@@ -173,10 +273,10 @@ public class PlanningControl implements IPlanning{
 				if(hookTurnRequired()){
 					//Drive halfway through the intersection
 					if(this.currentDirection == Direction.East || this.currentDirection == Direction.West){
-						axisDif = car.getPosition().getX() - prevIntersection.getX();
+						axisDif = currentX - prevIntersection.getX();
 						axisDif = Math.abs(axisDif);
 					}else{
-						axisDif = car.getPosition().getY() - prevIntersection.getY();
+						axisDif = currentY - prevIntersection.getY();
 						axisDif = Math.abs(axisDif);
 					}if(axisDif > ((MAXINTERSECTIONSIZE/2)-5)){
 						this.currentDirection = this.nextIntersectionDirection;
@@ -190,6 +290,7 @@ public class PlanningControl implements IPlanning{
 			}else{
 				//If reached intersection then get next intersection
 				if(reachedIntersection()){
+					recordTravelledRoad();
 					this.prevIntersection = this.positionOfnextIntersection;
 					this.positionOfnextIntersection = route.nextIntersectionPosition();
 					if(positionOfnextIntersection != null){
@@ -198,21 +299,143 @@ public class PlanningControl implements IPlanning{
 					}else{
 						this.setDestinationDirection();
 						this.turning = true;
+					}legTurn = EtaModel.classifyTurn(getDirectionAngle(currentDirection), getDirectionAngle(nextIntersectionDirection));
+					if(positionOfnextIntersection != null){
+						this.setUpcomingTurn();
 					}
 				}
 			}
 		}else{
 			//If no more intersections then check if reached destination
-			if(this.currentDirection == Direction.East || this.currentDirection == Direction.West){
-				axisDif = car.getPosition().getX() - destination.getX();
-				axisDif = Math.abs(axisDif);
-			}else{
-				axisDif = car.getPosition().getY() - destination.getY();
-				axisDif = Math.abs(axisDif);
-			}if(axisDif < 3){
+			if(distanceToDestination() < 3){
 				destinationReached = true;
 			}
 		}
+	}
+	
+	/**
+	 * Calculates the speed the car should travel at from the turns, traffic lights, destination and vehicles ahead
+	 * @param lightDistance The distance to a red or amber traffic light ahead, infinite if there is none
+	 * @param timeToCollision The shortest time to collision with a vehicle ahead, infinite if there is none
+	 * @return The target speed, infinite if nothing ahead limits the car
+	 */
+	private float targetSpeed(float lightDistance, float timeToCollision){
+		float turnDistance = Float.POSITIVE_INFINITY;
+		float destinationDistance = Float.POSITIVE_INFINITY;
+		
+		if(positionOfnextIntersection == null){
+			destinationDistance = distanceToDestination();
+		}else if(turning && legTurn != EtaModel.Turn.Straight){
+			//Still turning through the intersection just reached
+			turnDistance = 0;
+		}else if(upcomingTurn != EtaModel.Turn.Straight){
+			turnDistance = distanceToNextIntersection();
+		}return speedProfilePlanner.targetSpeed(car.getVelocity().len(), turnDistance, lightDistance, destinationDistance, timeToCollision);
+	}
+	
+	/**
+	 * Reports the observations of the road most recently travelled to the shared graph, if any are waiting
+	 */
+	private void reportTravelledRoad(){
+		if(!roadReportPending){
+			return;
+		}roadReportPending = false;
+		if(reportedObservations > 0){
+			graph.reportCongestion(reportedRoad, reportedVehicleCount, reportedLightDwell);
+		}if(reportedEdge != -1 && reportedNode != -1){
+			graph.getEtaModel().report(reportedEdge, reportedNode, reportedTurn, reportedLegTime, reportedLightDwell);
+		}
+	}
+	
+	/**
+	 * Updates the turn the car makes at the intersection it is travelling towards, from the direction of the road
+	 * to it and the direction of the intersection or destination after it
+	 */
+	private void setUpcomingTurn(){
+		Point2D.Double followingPosition = route.followingIntersectionPosition();
+		if(followingPosition == null){
+			followingPosition = destination;
+		}upcomingTurn = EtaModel.classifyTurn(getDirectionAngle(nextIntersectionDirection), EtaModel.headingAngle(positionOfnextIntersection.getX(), positionOfnextIntersection.getY(), followingPosition.getX(), followingPosition.getY()));
+	}
+	
+	/**
+	 * Records the state of the traffic light at the intersection the car is approaching so it can be reported to the
+	 * signal phase model shared by every car when the decision is applied
+	 */
+	private void recordTrafficLight(){
+		TrafficLight.State lightState = roadRuleHandler.getApproachingLightState(MAXINTERSECTIONSIZE);
+		int approachingNode = route.getCurrentNodeId();
+		int heading = getDirectionAngle(currentDirection);
+		
+		if(lightState != null && positionOfnextIntersection != null && approachingNode != -1 && heading != -1){
+			lightReportPending = true;
+			reportedLightNode = approachingNode;
+			reportedApproach = SignalPhaseModel.approach(heading);
+			reportedLightState = lightState;
+		}
+	}
+	
+	/**
+	 * Reports the traffic light observed by the latest decision to the signal phase model, if one was observed,
+	 * so routes can be planned for the phase each light will be in when it is reached
+	 */
+	private void reportTrafficLight(){
+		if(lightReportPending){
+			lightReportPending = false;
+			graph.getSignalPhaseModel().observe(reportedLightNode, reportedApproach, reportedLightState, simulationTime);
+		}
+	}
+	
+	/**
+	 * Sets the search used to plan routes, time dependent searches wait for the traffic light phases learned
+	 * from every car and so can plan routes that reach the lights while they are green
+	 * @param searchType The search used to find routes
+	 */
+	public void setSearchType(Graph.SearchType searchType){
+		route.setSearchType(searchType);
+	}
+	
+	/**
+	 * Records the congestion observed and the time taken on the road between the previous intersection and the one
+	 * just reached so they can be reported when the decision is applied, then starts observing the next road
+	 */
+	private void recordTravelledRoad(){
+		Edge travelledEdge;
+		if(prevIntersection != null){
+			roadMidpoint.setLocation((prevIntersection.getX()+positionOfnextIntersection.getX())/2, (prevIntersection.getY()+positionOfnextIntersection.getY())/2);
+			reportedRoad = world.roadAtPoint(roadMidpoint);
+			if(reportedRoad != null){
+				travelledEdge = graph.getEdge(reportedRoad);
+				roadReportPending = true;
+				reportedEdge = travelledEdge == null ? -1 : travelledEdge.getId();
+				reportedNode = route.getCurrentNodeId();
+				reportedObservations = vehicleObservations;
+				reportedVehicleCount = vehicleObservations > 0 ? vehicleCountTotal/vehicleObservations : 0;
+				reportedLightDwell = lightDwell;
+				reportedLegTime = legTime;
+				reportedTurn = legTurn;
+			}
+		}vehicleCountTotal = 0;
+		vehicleObservations = 0;
+		lightDwell = 0;
+		legTime = 0;
+	}
+	
+	/**
+	 * Applies the input decided on in the latest decision to the car and updates the car, then reports the
+	 * observations recorded by the decision and the time the car has been updated to to the shared graph
+	 * @param delta The amount of time passed since the last update
+	 */
+	public void apply(float delta) {
+		reportTravelledRoad();
+		reportTrafficLight();
+		graph.advanceSimulationTime(simulationTime);
+		
+		//If no route has been selected then do nothing
+		if(!decisionMade){
+			return;
+		}
+		controller.adjustCar(decidedAngle, decidedAcceleration);
 		
 		//Update the car
 		car.update(delta);
@@ -224,25 +447,25 @@ public class PlanningControl implements IPlanning{
 	 */
 	private boolean reachedIntersection(){
 		if(this.currentDirection == Direction.East){
-			if(car.getPosition().getX() >= positionOfnextIntersection.getX()){
+			if(currentX >= positionOfnextIntersection.getX()){
 				return true;
 			}else{
 				return false;
 			}
 		}else if(this.currentDirection == Direction.West){
-			if(car.getPosition().getX() <= positionOfnextIntersection.getX()){
+			if(currentX <= positionOfnextIntersection.getX()){
 				return true;
 			}else{
 				return false;
 			}
 		}else if(this.currentDirection == Direction.North){
-			if(car.getPosition().getY() >= positionOfnextIntersection.getY()){
+			if(currentY >= positionOfnextIntersection.getY()){
 				return true;
 			}else{
 				return false;
 			}
 		}else if(this.currentDirection == Direction.South){
-			if(car.getPosition().getY() <= positionOfnextIntersection.getY()){
+			if(currentY <= positionOfnextIntersection.getY()){
 				return true;
 			}else{
 				return false;
@@ -358,42 +581,43 @@ public class PlanningControl implements IPlanning{
 	}
 	
 	/**
-	 * Returns the distance to the next intersection, used for calculating eta
+	 * Reads the position of the car once, so the rest of the update uses the same position without reading it again
+	 */
+	private void updatePosition(){
+		this.currentPosition = car.getPosition();
+		this.currentX = currentPosition.getX();
+		this.currentY = currentPosition.getY();
+	}
+	
+	/**
+	 * Returns the distance to the next intersection from the position read at the latest update,
+	 * used for calculating eta and the target speed
 	 * @return The distance to the next intersection
 	 */
 	private float distanceToNextIntersection(){
 		double distanceToNextIntersection = 0;
 		if(this.currentDirection == Direction.East){
-			distanceToNextIntersection = positionOfnextIntersection.getX() - car.getPosition().getX();
+			distanceToNextIntersection = positionOfnextIntersection.getX() - currentX;
 		}else if(this.currentDirection == Direction.West){
-			distanceToNextIntersection = car.getPosition().getX() - positionOfnextIntersection.getX();
+			distanceToNextIntersection = currentX - positionOfnextIntersection.getX();
 		}else if(this.currentDirection == Direction.North){
-			distanceToNextIntersection = positionOfnextIntersection.getY() - car.getPosition().getY();
+			distanceToNextIntersection = positionOfnextIntersection.getY() - currentY;
 		}else if(this.currentDirection == Direction.South){
-			distanceToNextIntersection = car.getPosition().getY() - positionOfnextIntersection.getY();
+			distanceToNextIntersection = currentY - positionOfnextIntersection.getY();
 		}return (float)distanceToNextIntersection;
 	}
 	
 	/**
-	 * This function sorts the perception response with respect to timetoCollision
-	 * @param current perception response of the world
-	 * @return sorted perception response
+	 * Returns the distance to the destination along the direction the car is travelling, used once there are
+	 * no more intersections on the route
+	 * @return The distance to the destination
 	 */
-	private PerceptionResponse[] prioritisePerceptionResponse(PerceptionResponse[] results){
-		
-		for(int i=0; i<results.length - 1; i++)
-		{
-			int index = i;
-            for (int j = i + 1; j < results.length; j++)
-                if (results[j].timeToCollision < results[index].timeToCollision)
-                    index = j;
-      
-            PerceptionResponse smallerCollisionTime = results[index]; 
-            results[index] = results[i];
-            results[i] = smallerCollisionTime;
+	private float distanceToDestination(){
+		if(this.currentDirection == Direction.East || this.currentDirection == Direction.West){
+			return (float)Math.abs(currentX - destination.getX());
+		}else{
+			return (float)Math.abs(currentY - destination.getY());
 		}
-		
-		return results;
 	}
 	
 
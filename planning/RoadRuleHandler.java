@@ -1,6 +1,5 @@
 package group26.planning;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 
 import com.unimelb.swen30006.partc.ai.interfaces.PerceptionResponse;
@@ -12,43 +11,49 @@ import com.unimelb.swen30006.partc.core.infrastructure.TrafficLight;
  *
  */
 public class RoadRuleHandler {
-	private ArrayList<PerceptionResponse> trafficLights;
+	//The closest traffic light to the car, null if no traffic lights are perceived
+	private PerceptionResponse closestTrafficLight;
 	
 	public RoadRuleHandler(){
-		trafficLights = null;
+		closestTrafficLight = null;
 	}
 	
 	
 	/**
-	 * Updates and sorts the traffic lights with the new location of the car
-	 * @param trafficLights The traffic light objects close to the car
+	 * Updates the closest traffic light with the new location of the car
+	 * @param trafficLights The traffic light objects close to the car, only the first count are used
+	 * @param count The number of traffic lights
 	 */
-	public void update(ArrayList<PerceptionResponse> trafficLights){
-		PerceptionResponse currentClosestTrafficLight;
-		int i;
-		ArrayList<PerceptionResponse> sortedTrafficLights = new ArrayList<PerceptionResponse>();
-		//Only need to find the closest traffic light that the car is facing as that will be the only one that affects the car
-		for(PerceptionResponse trafficLight : trafficLights){
-			if(sortedTrafficLights.size()<1){
-				sortedTrafficLights.add(trafficLight);
-			}else{
-				for(i=0;i<sortedTrafficLights.size();i++){
-					currentClosestTrafficLight = sortedTrafficLights.get(0);
-					if(trafficLight.distance < currentClosestTrafficLight.distance){
-						sortedTrafficLights.add(0, trafficLight);
-						//This line is supposed to check if the car is facing the traffic light but it may be incorrect, will find out in testing
-						if(trafficLight.direction.angle()<180){
-							sortedTrafficLights.add(0, trafficLight);
-						}else{
-							sortedTrafficLights.add(sortedTrafficLights.size(), trafficLight);
-							
-						}break;
-					}
-				}if(i==sortedTrafficLights.size()){
-					sortedTrafficLights.add(sortedTrafficLights.size(), trafficLight);
-				}
-			}		
-		}this.trafficLights = sortedTrafficLights;
+	public void update(PerceptionResponse[] trafficLights, int count){
+		//Only need to find the closest traffic light as that will be the only one that affects the car
+		closestTrafficLight = null;
+		for(int i=0;i<count;i++){
+			if(closestTrafficLight == null || trafficLights[i].distance < closestTrafficLight.distance){
+				closestTrafficLight = trafficLights[i];
+			}
+		}
+	}
+	
+	/**
+	 * Returns the state of the closest traffic light if it is facing the car and within the given distance
+	 * @param range The furthest distance to the traffic light
+	 * @return The state of the traffic light, null if there is no such traffic light
+	 */
+	public TrafficLight.State getApproachingLightState(float range){
+		if(closestTrafficLight == null || closestTrafficLight.direction.angle()>=180 || closestTrafficLight.distance >= range){
+			return null;
+		}return (TrafficLight.State)closestTrafficLight.information.get("State");
+	}
+	
+	/**
+	 * Returns the distance to the closest traffic light if it is facing the car and red or amber
+	 * @return The distance to the traffic light, infinite if the car does not need to stop for a traffic light
+	 */
+	public float getStopDistance(){
+		TrafficLight.State state = getApproachingLightState(Float.POSITIVE_INFINITY);
+		if(state == TrafficLight.State.Red || state == TrafficLight.State.Amber){
+			return closestTrafficLight.distance;
+		}return Float.POSITIVE_INFINITY;
 	}
 	
 	/**
@@ -56,12 +61,8 @@ public class RoadRuleHandler {
 	 * @return True if the car needs to stop for a close red or orange light
 	 */
 	public boolean checkForStop(){
-		if(trafficLights.size() < 1){
-			return false;
-		}
-		PerceptionResponse closestTrafficLight = trafficLights.get(0);
 		HashMap<String,Object> trafficLightInformation;
-		if(trafficLights.size()<1){
+		if(closestTrafficLight == null){
 			return false;
 		}else{
 			//Check if closest traffic light is facing the car (not behind the car)
@@ -1,7 +1,6 @@
 package group26.planning;
 
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
 
 import com.unimelb.swen30006.partc.core.World;
 import com.unimelb.swen30006.partc.roads.Road;
@@ -14,12 +13,30 @@ import com.unimelb.swen30006.partc.roads.Road;
 public class Route {
 	//A graph of all the roads and intersections
 	private Graph roadMap;
-	//A list of all the intersections the car needs to travel between to reach the destination
-	private ArrayList<Node> currentRoute;
+	//The intersections the car needs to travel between to reach the destination, including those passed
+	private PlannedPath currentRoute;
 	//The destination to be reached
 	private Point2D.Double destination;
 	//The position of the node most recently given to the planning system
 	private Point2D.Double previousNodePosition;
+	//Repairs the route when roads are blocked or the car leaves the route, created the first time it is needed
+	private IncrementalPlanner repairPlanner;
+	//Indicates whether the repair planner has searched for the current destination
+	private boolean repairPlannerCurrent;
+	//The distance from the final intersection on the route to the destination
+	private double finalDistance;
+	//The index of the next intersection on the route to give to the planning system
+	private int nextNode;
+	//The expected moving time at the free flow speed along the route from the first intersection to each intersection
+	private double[] movingTimes;
+	//The expected traffic light delay of the intersections before each position on the route
+	private double[] signalDelays;
+	//The number of each type of turn made at the intersections before each position on the route
+	private int[][] turnCounts;
+	//The types of turn a car can make
+	private static final EtaModel.Turn[] TURNS = EtaModel.Turn.values();
+	//The search used to plan new routes
+	private Graph.SearchType searchType = Graph.SearchType.AStar;
 	
 	/**
 	 * Constructor for the route class, creates the graph from the world object
@@ -29,6 +46,14 @@ public class Route {
 		roadMap = new Graph(world);
 	}
 	
+	/**
+	 * Constructor for the route class using a graph that may be shared with other cars
+	 * @param roadMap The graph of the roads and intersections
+	 */
+	public Route(Graph roadMap){
+		this.roadMap = roadMap;
+	}
+	
 	/**
 	 * Plans a route to the given destination originating from the given road
 	 * @param startingRoad The road the car is starting from
@@ -36,82 +61,238 @@ public class Route {
 	 * @return Returns true if a valid route exists, false if not
 	 */
 	public boolean planRoute(Road startingRoad, Point2D.Double destination){
-		currentRoute = this.roadMap.planRoute(startingRoad, destination);
+		return followRoute(this.roadMap.planRoute(startingRoad, destination, searchType), destination);
+	}
+	
+	/**
+	 * Sets the search used to plan new routes, time dependent searches plan for the traffic light phases
+	 * learned by the graph
+	 * @param searchType The search used to find routes
+	 */
+	public void setSearchType(Graph.SearchType searchType){
+		this.searchType = searchType;
+	}
+	
+	/**
+	 * Follows a route that has already been planned, such as one from the route planning service
+	 * @param plannedRoute The intersections on the route, null if no valid route exists
+	 * @param destination The location of the given destination
+	 * @return Returns true if a valid route was given, false if not
+	 */
+	public boolean followRoute(PlannedPath plannedRoute, Point2D.Double destination){
+		currentRoute = plannedRoute;
 		if(currentRoute == null){
 			return false;
 		}else{
 			this.destination = destination;
+			this.repairPlannerCurrent = false;
+			measureRoute();
 			return true;
 		}
 	}
 	
+	/**
+	 * Repairs the route around a blocked road, reusing the previous repair search where possible
+	 * The first repair for a destination searches the whole graph, later repairs only search what changed
+	 * @param blockedRoad The road that is blocked
+	 * @param currentRoad The road the car is currently on
+	 * @return Returns true if a valid route still exists, false if not
+	 */
+	public boolean blockRoad(Road blockedRoad, Road currentRoad){
+		Node startingNode = roadMap.getStartingNode(roadMap.getEdge(currentRoad), destination);
+		prepareRepairPlanner(startingNode);
+		repairPlanner.setEdgeBlocked(roadMap.getEdge(blockedRoad), true);
+		return followRepairedRoute(repairPlanner.replanFrom(startingNode));
+	}
+	
+	/**
+	 * Repairs the route from the road the car is now on after it has left the route
+	 * @param currentRoad The road the car is currently on
+	 * @return Returns true if a valid route still exists, false if not
+	 */
+	public boolean rerouteFrom(Road currentRoad){
+		Node startingNode = roadMap.getStartingNode(roadMap.getEdge(currentRoad), destination);
+		prepareRepairPlanner(startingNode);
+		return followRepairedRoute(repairPlanner.replanFrom(startingNode));
+	}
+	
+	/**
+	 * Creates the repair planner and searches for the current destination if it has not already
+	 * @param startingNode The node the route starts from
+	 */
+	private void prepareRepairPlanner(Node startingNode){
+		if(repairPlanner == null){
+			repairPlanner = new IncrementalPlanner(roadMap);
+		}if(!repairPlannerCurrent){
+			repairPlanner.planRoute(startingNode, destination);
+			repairPlannerCurrent = true;
+		}
+	}
+	
+	/**
+	 * Follows a repaired route if one was found, otherwise keeps the current route
+	 * @param repairedRoute The repaired route, null if no valid route exists
+	 * @return Returns true if a valid route was found, false if not
+	 */
+	private boolean followRepairedRoute(PlannedPath repairedRoute){
+		if(repairedRoute == null){
+			return false;
+		}currentRoute = repairedRoute;
+		measureRoute();
+		return true;
+	}
+	
 	/**
 	 * Calculates the distance to the destination from the remaining nodes on the route
+	 * Uses the distances along the route stored when the route was planned so the remaining route is not walked
 	 * @return The distance to the destination
 	 */
 	public double distanceToDestination(){
-		double total = 0;
-		double intersectionDistance;
-		double distanceFromCurrentNode, distanceFromEndNode;
-		Point2D.Double finalNodePosition;
-		double xDif, yDif;
-		Node node1, node2;
+		double total;
+		
+		if(nextNode > 0){
+			//The car is travelling towards the last given node, so the rest of the route starts from there
+			total = currentRoute.getLength() - currentRoute.getDistance(nextNode-1);
+		}else if(currentRoute.size() > 0){
+			//No node has been given from this route yet, so the car is still travelling towards the last given node
+			total = currentRoute.getLength();
+			if(previousNodePosition != null){
+				total += PlannedPath.intersectionDistance(previousNodePosition, currentRoute.getNode(0).getPosition());
+			}
+		}else{
+			//If the route is empty the final node is the last given node
+			return endDistance(previousNodePosition);
+		}return total + finalDistance;
+	}
+	
+	/**
+	 * Calculates the expected time to reach the destination from the remaining nodes on the route
+	 * Uses the times along the route stored when the route was followed, scaled by the latest cruising speed
+	 * and turn delays, so the remaining route is not walked
+	 * @return The time to the destination in seconds
+	 */
+	public double timeToDestination(){
+		EtaModel etaModel = roadMap.getEtaModel();
+		int length = currentRoute.size();
+		int heading = nextNode > 0 ? nextNode-1 : 0;
+		double total;
 		
-		//Calculate the distance between all the nodes on the route
-		for(int i=0;i<(currentRoute.size()-1);i++){
-			node1 = currentRoute.get(i);
-			node2 = currentRoute.get(i+1);
-			if(node1.getPosition().getX()==node2.getPosition().getX()){
-				intersectionDistance = node1.getPosition().getY()-node2.getPosition().getY();
-				intersectionDistance = Math.abs(intersectionDistance);
-			}else{
-				intersectionDistance = node1.getPosition().getX()-node2.getPosition().getX();
-				intersectionDistance = Math.abs(intersectionDistance);
-			}total += intersectionDistance;
+		if(length == 0){
+			return endDistance(previousNodePosition)/etaModel.getCruiseSpeed();
 		}
+		//The rest of the route starts from the node the car is travelling towards, including the wait and turn there
+		total = (movingTimes[length-1] - movingTimes[heading])*etaModel.getSpeedScale();
+		total += signalDelays[length] - signalDelays[heading];
+		for(EtaModel.Turn turn : TURNS){
+			total += etaModel.getTurnDelay(turn)*(turnCounts[turn.ordinal()][length] - turnCounts[turn.ordinal()][heading]);
+		}total += finalDistance/etaModel.getCruiseSpeed();
 		
-		if(currentRoute.size()>0){
-			//Calculate the distance from the node the car is currently travelling towards to next node on route
-			node1 = currentRoute.get(0);
-			if(node1.getPosition().getX()==previousNodePosition.getX()){
-				intersectionDistance = node1.getPosition().getY()-previousNodePosition.getY();
-				intersectionDistance = Math.abs(intersectionDistance);
-			}else{
-				intersectionDistance = node1.getPosition().getX()-previousNodePosition.getX();
-				intersectionDistance = Math.abs(intersectionDistance);
-			}total += intersectionDistance;
+		if(nextNode == 0 && previousNodePosition != null){
+			//No node has been given from this route yet, so the car is still travelling towards the last given node
+			total += PlannedPath.intersectionDistance(previousNodePosition, currentRoute.getNode(0).getPosition())/etaModel.getCruiseSpeed();
+		}return total;
+	}
+	
+	/**
+	 * Returns the id of the intersection most recently given to the planning system
+	 * @return The node id, or -1 if no intersection has been given from the current route
+	 */
+	public int getCurrentNodeId(){
+		if(nextNode == 0){
+			return -1;
+		}return currentRoute.getNodeId(nextNode-1);
+	}
+	
+	/**
+	 * Starts following the current route from its first intersection and stores the distance from its final
+	 * intersection to the destination, along with the moving time, traffic light delays and turns before
+	 * each intersection used to estimate the time to the destination
+	 */
+	private void measureRoute(){
+		EtaModel etaModel = roadMap.getEtaModel();
+		int length = currentRoute.size();
+		Point2D.Double previous, current, next;
+		EtaModel.Turn turn;
+		
+		nextNode = 0;
+		movingTimes = new double[length];
+		signalDelays = new double[length+1];
+		turnCounts = new int[TURNS.length][length+1];
+		if(length > 0){
+			finalDistance = endDistance(currentRoute.getLastNode().getPosition());
+		}
+		for(int i=0;i<length;i++){
+			current = currentRoute.getNode(i).getPosition();
+			if(i > 0){
+				movingTimes[i] = movingTimes[i-1] + movingTime(currentRoute.getNodeId(i-1), currentRoute.getNodeId(i));
+			}signalDelays[i+1] = signalDelays[i] + etaModel.getSignalDelay(currentRoute.getNodeId(i));
 			
-			//Get the position of the final node
-			finalNodePosition = currentRoute.get(currentRoute.size()-1).getPosition();
-		}else{
-			//If the route is empty the final node is the last given node
-			finalNodePosition = previousNodePosition;
+			for(int j=0;j<TURNS.length;j++){
+				turnCounts[j][i+1] = turnCounts[j][i];
+			}
+			//The turn at the first intersection depends on the road the car starts on, so it is not counted
+			if(i > 0){
+				previous = currentRoute.getNode(i-1).getPosition();
+				next = i+1 < length ? currentRoute.getNode(i+1).getPosition() : destination;
+				turn = EtaModel.classifyTurn(EtaModel.headingAngle(previous.getX(), previous.getY(), current.getX(), current.getY()),
+						EtaModel.headingAngle(current.getX(), current.getY(), next.getX(), next.getY()));
+				turnCounts[turn.ordinal()][i+1]++;
+			}
 		}
-		//Calculate distance from final node to destination
-		yDif = finalNodePosition.getY() - destination.getY();
-		yDif = Math.abs(yDif);
-		xDif = finalNodePosition.getX() - destination.getX();
-		xDif = Math.abs(xDif);
+	}
+	
+	/**
+	 * Returns the expected moving time at the free flow speed of the fastest road between two adjacent intersections
+	 * @param startNode The node id of the first intersection
+	 * @param endNode The node id of the second intersection
+	 * @return The moving time of the road
+	 */
+	private double movingTime(int startNode, int endNode){
+		GraphStorage compactGraph = roadMap.getCompactGraph();
+		CongestionModel congestionModel = roadMap.getCongestionModel();
+		double bestTime = Double.POSITIVE_INFINITY;
+		
+		for(int arc=compactGraph.getFirstArc(startNode);arc<compactGraph.getEndArc(startNode);arc++){
+			if(compactGraph.getArcTarget(arc) == endNode){
+				bestTime = Math.min(bestTime, congestionModel.getMovingTime(compactGraph.getArcEdge(arc)));
+			}
+		}return bestTime;
+	}
+	
+	/**
+	 * Calculates the distance from the final intersection on the route to the destination
+	 * @param finalNodePosition The position of the final intersection
+	 * @return The distance to the destination
+	 */
+	private double endDistance(Point2D.Double finalNodePosition){
+		double xDif = Math.abs(finalNodePosition.getX() - destination.getX());
+		double yDif = Math.abs(finalNodePosition.getY() - destination.getY());
 		if(xDif > yDif){
-			distanceFromEndNode = xDif;
+			return xDif;
 		}else{
-			distanceFromEndNode = yDif;
-		}total += distanceFromEndNode;
-		
-		return total;
+			return yDif;
+		}
+	}
+	
+	/**
+	 * Returns the position of the intersection after the one most recently given to the planning system,
+	 * without moving past it on the route
+	 * @return The position of the following intersection, null if there is none
+	 */
+	public Point2D.Double followingIntersectionPosition(){
+		if(currentRoute == null || nextNode >= currentRoute.size()){
+			return null;
+		}return currentRoute.getNode(nextNode).getPosition();
 	}
 	
 	/**
-	 * Returns the position of the next intersection on the route and removes that intersection from the route
+	 * Returns the position of the next intersection on the route and moves past that intersection on the route
 	 * @return The position of the next intersection on the route
 	 */
 	public Point2D.Double nextIntersectionPosition(){
-		Node nextNode;
-		
-		if(currentRoute.size()>0){
-			nextNode = currentRoute.get(0);
-			this.previousNodePosition = nextNode.getPosition();
-			currentRoute.remove(0);		
+		if(nextNode < currentRoute.size()){
+			this.previousNodePosition = currentRoute.getNode(nextNode).getPosition();
+			nextNode++;
 			return previousNodePosition;
 		}else{
 			return null;
@@ -0,0 +1,155 @@
+package group26.planning;
+
+import java.awt.geom.Point2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used cache of planned routes
+ * Routes are keyed on the road they start from and the grid cell the destination falls in,
+ * each entry remembers the graph version it was planned on so routes planned before a change are never returned,
+ * such routes are removed when next asked for or evicted as the least recently used
+ * Planned paths are immutable so the same route is handed to every car that asks for it
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class RouteCache {
+	//The size of the grid cells destinations are grouped into
+	private static final double CELLSIZE = 5;
+	
+	//The cached routes in least recently used order
+	private final LinkedHashMap<RouteKey, CachedRoute> routes;
+	//The largest number of routes kept
+	private final int capacity;
+	//The statistics of the cache
+	private long hitCount, missCount, evictionCount;
+	
+	/**
+	 * Constructor for the route cache
+	 * @param capacity The largest number of routes kept
+	 */
+	public RouteCache(int capacity){
+		this.capacity = capacity;
+		this.routes = new LinkedHashMap<RouteKey, CachedRoute>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<RouteKey, CachedRoute> eldest){
+				if(size() > RouteCache.this.capacity){
+					evictionCount++;
+					return true;
+				}return false;
+			}
+		};
+	}
+	
+	/**
+	 * Returns the route cached for the starting edge and destination cell
+	 * The caller must check the route still reaches its exact destination
+	 * @param startingEdge The edge the route starts from
+	 * @param destination The destination of the route
+	 * @param graphVersion The current version of the graph
+	 * @return The cached route, or null if none is cached for the current graph version
+	 */
+	public synchronized PlannedPath get(Edge startingEdge, Point2D.Double destination, int graphVersion){
+		RouteKey key = new RouteKey(startingEdge, destination);
+		CachedRoute cachedRoute = routes.get(key);
+		
+		if(cachedRoute == null){
+			missCount++;
+			return null;
+		}else if(cachedRoute.graphVersion != graphVersion){
+			//The graph has changed since the route was planned
+			routes.remove(key);
+			missCount++;
+			return null;
+		}hitCount++;
+		return cachedRoute.route;
+	}
+	
+	/**
+	 * Adds a planned route to the cache
+	 * @param startingEdge The edge the route starts from
+	 * @param destination The destination of the route
+	 * @param graphVersion The version of the graph the route was planned on
+	 * @param route The planned route
+	 */
+	public synchronized void put(Edge startingEdge, Point2D.Double destination, int graphVersion, PlannedPath route){
+		routes.put(new RouteKey(startingEdge, destination), new CachedRoute(route, graphVersion));
+	}
+	
+	/**
+	 * Removes every route from the cache
+	 */
+	public synchronized void clear(){
+		routes.clear();
+	}
+	
+	/**
+	 * Returns the number of requests that found a route
+	 * @return The number of cache hits
+	 */
+	public synchronized long getHitCount(){
+		return hitCount;
+	}
+	
+	/**
+	 * Returns the number of requests that did not find a route
+	 * @return The number of cache misses
+	 */
+	public synchronized long getMissCount(){
+		return missCount;
+	}
+	
+	/**
+	 * Returns the number of routes removed to stay within the capacity
+	 * @return The number of evictions
+	 */
+	public synchronized long getEvictionCount(){
+		return evictionCount;
+	}
+	
+	/**
+	 * A route and the graph version it was planned on
+	 */
+	private static class CachedRoute {
+		private final PlannedPath route;
+		private final int graphVersion;
+		
+		private CachedRoute(PlannedPath route, int graphVersion){
+			this.route = route;
+			this.graphVersion = graphVersion;
+		}
+	}
+	
+	/**
+	 * The starting edge and destination cell a route is cached under
+	 */
+	private static class RouteKey {
+		private final int edge;
+		private final long cellX, cellY;
+		
+		private RouteKey(Edge startingEdge, Point2D.Double destination){
+			this.edge = startingEdge.getId();
+			this.cellX = (long)Math.floor(destination.getX()/CELLSIZE);
+			this.cellY = (long)Math.floor(destination.getY()/CELLSIZE);
+		}
+		
+		@Override
+		public boolean equals(Object other){
+			if(!(other instanceof RouteKey)){
+				return false;
+			}
+			RouteKey otherKey = (RouteKey)other;
+			return edge == otherKey.edge && cellX == otherKey.cellX && cellY == otherKey.cellY;
+		}
+		
+		@Override
+		public int hashCode(){
+			int hash = edge;
+			hash = (31*hash) + (int)(cellX ^ (cellX >>> 32));
+			hash = (31*hash) + (int)(cellY ^ (cellY >>> 32));
+			return hash;
+		}
+	}
+}
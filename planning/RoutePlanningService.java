@@ -0,0 +1,112 @@
+package group26.planning;
+
+import java.awt.geom.Point2D;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.unimelb.swen30006.partc.roads.Road;
+
+/**
+ * Plans routes for many cars at once over a single shared graph
+ * Requests are run on a bounded pool of worker threads, when the queue is full the requesting
+ * car plans the route itself so that a burst of requests slows callers down rather than failing
+ * Requests made after the service has been shut down are rejected rather than left waiting forever
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class RoutePlanningService {
+	//The number of requests that may wait for a worker per worker thread
+	private static final int QUEUEDREQUESTSPERWORKER = 64;
+	
+	//The graph shared by every request
+	private final Graph roadMap;
+	//The worker threads that run the searches
+	private final ExecutorService workers;
+	
+	/**
+	 * Constructor for the service using one worker thread per available processor
+	 * @param roadMap The graph the routes are planned on
+	 */
+	public RoutePlanningService(Graph roadMap){
+		this(roadMap, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Constructor for the service
+	 * @param roadMap The graph the routes are planned on
+	 * @param workerCount The number of worker threads
+	 */
+	public RoutePlanningService(Graph roadMap, int workerCount){
+		this.roadMap = roadMap;
+		this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(workerCount*QUEUEDREQUESTSPERWORKER),
+				new PlannerThreadFactory(), new CallerRunsUntilShutdownPolicy());
+	}
+	
+	/**
+	 * Returns the graph the routes are planned on
+	 * @return The shared graph
+	 */
+	public Graph getGraph(){
+		return roadMap;
+	}
+	
+	/**
+	 * Plans a route from the given road to the destination on one of the worker threads
+	 * @param startingRoad The road the car is starting on
+	 * @param destination The destination the car wants to reach
+	 * @return A future holding the route, or null if no valid route exists
+	 * @throws RejectedExecutionException If the service has been shut down
+	 */
+	public CompletableFuture<PlannedPath> planRoute(final Road startingRoad, final Point2D.Double destination){
+		return CompletableFuture.supplyAsync(new Supplier<PlannedPath>(){
+			@Override
+			public PlannedPath get(){
+				return roadMap.planRoute(startingRoad, destination);
+			}
+		}, workers);
+	}
+	
+	/**
+	 * Stops the worker threads once the requests already made have been planned
+	 */
+	public void shutdown(){
+		workers.shutdown();
+	}
+	
+	/**
+	 * Plans a request on the calling thread when the queue is full, but rejects it once the service has been shut
+	 * down, since a request that is silently discarded would leave its future incomplete forever
+	 */
+	private static class CallerRunsUntilShutdownPolicy implements RejectedExecutionHandler {
+		@Override
+		public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor){
+			if(executor.isShutdown()){
+				throw new RejectedExecutionException("Route planning service has been shut down");
+			}runnable.run();
+		}
+	}
+	
+	/**
+	 * Creates daemon worker threads so an unfinished service never keeps the simulation running
+	 */
+	private static class PlannerThreadFactory implements ThreadFactory {
+		//The number of threads created so far, used to name them
+		private final AtomicInteger threadCount = new AtomicInteger();
+		
+		@Override
+		public Thread newThread(Runnable runnable){
+			Thread thread = new Thread(runnable, "route-planner-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
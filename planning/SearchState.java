@@ -0,0 +1,185 @@
+package group26.planning;
+
+import java.util.Arrays;
+
+/**
+ * The working state of a single search over the compact graph
+ * Each search stamps the nodes it touches with its own epoch rather than clearing flags on every node,
+ * so starting a search costs nothing and only the nodes that are explored are written to
+ * A search state must only be used by one search at a time
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class SearchState {
+	//The epoch of the current search
+	private int epoch;
+	//The epoch each node was last reached in, its cost and previous node are only valid for that epoch
+	private int[] reachedEpochs;
+	//The epoch each node was last closed in
+	private int[] closedEpochs;
+	//The cost to reach each node in the current search
+	private double[] costs;
+	//The node each node was reached from in the current search, -1 for the starting node
+	private int[] previousNodes;
+	//The open set of the current search
+	private BinaryHeap openSet;
+	//The epoch each edge and node was last marked as reaching the destination in
+	private int[] goalEdgeEpochs;
+	private int[] goalNodeEpochs;
+	//The edges that reach the destination of the current search
+	private int[] goalEdges;
+	private int goalEdgeCount;
+	
+	/**
+	 * Constructor for the search state
+	 * @param nodeCount The number of nodes in the graph being searched
+	 * @param edgeCount The number of edges in the graph being searched
+	 */
+	public SearchState(int nodeCount, int edgeCount){
+		this.epoch = 0;
+		this.reachedEpochs = new int[nodeCount];
+		this.closedEpochs = new int[nodeCount];
+		this.costs = new double[nodeCount];
+		this.previousNodes = new int[nodeCount];
+		this.openSet = new BinaryHeap(nodeCount);
+		this.goalEdgeEpochs = new int[edgeCount];
+		this.goalNodeEpochs = new int[nodeCount];
+		this.goalEdges = new int[edgeCount];
+		this.goalEdgeCount = 0;
+	}
+	
+	/**
+	 * Starts a new search, forgetting everything from the previous search
+	 */
+	public void beginSearch(){
+		epoch++;
+		//Only clear the stamps when the epoch wraps around so that old stamps cannot match
+		if(epoch == Integer.MAX_VALUE){
+			Arrays.fill(reachedEpochs, 0);
+			Arrays.fill(closedEpochs, 0);
+			Arrays.fill(goalEdgeEpochs, 0);
+			Arrays.fill(goalNodeEpochs, 0);
+			epoch = 1;
+		}openSet.clear();
+		goalEdgeCount = 0;
+	}
+	
+	/**
+	 * Returns the open set of the current search
+	 * @return The open set
+	 */
+	public BinaryHeap getOpenSet(){
+		return openSet;
+	}
+	
+	/**
+	 * Returns whether the node has been reached in the current search
+	 * @param node The node id
+	 * @return True if the node has a cost in this search
+	 */
+	public boolean isReached(int node){
+		return reachedEpochs[node] == epoch;
+	}
+	
+	/**
+	 * Returns the cost of reaching the node in the current search
+	 * @param node The node id
+	 * @return The cost, or infinity if the node has not been reached
+	 */
+	public double getCost(int node){
+		if(reachedEpochs[node] != epoch){
+			return Double.POSITIVE_INFINITY;
+		}return costs[node];
+	}
+	
+	/**
+	 * Returns the node the given node was reached from in the current search
+	 * @param node The node id
+	 * @return The previous node id, or -1 for the starting node
+	 */
+	public int getPreviousNode(int node){
+		return previousNodes[node];
+	}
+	
+	/**
+	 * Records the cost of reaching the node and the node it was reached from
+	 * @param node The node id
+	 * @param cost The cost of reaching the node
+	 * @param previousNode The node it was reached from, -1 for the starting node
+	 */
+	public void setCost(int node, double cost, int previousNode){
+		reachedEpochs[node] = epoch;
+		costs[node] = cost;
+		previousNodes[node] = previousNode;
+	}
+	
+	/**
+	 * Returns whether the node has been closed in the current search
+	 * @param node The node id
+	 * @return True if the node has already been visited
+	 */
+	public boolean isClosed(int node){
+		return closedEpochs[node] == epoch;
+	}
+	
+	/**
+	 * Marks the node as closed in the current search
+	 * @param node The node id
+	 */
+	public void close(int node){
+		closedEpochs[node] = epoch;
+	}
+	
+	/**
+	 * Marks the edge and the nodes at either end of it as reaching the destination of the current search
+	 * @param edge The edge id
+	 * @param startNode The node the edge starts at
+	 * @param endNode The node the edge ends at, -1 if it has no end intersection
+	 */
+	public void addGoalEdge(int edge, int startNode, int endNode){
+		if(goalEdgeEpochs[edge] == epoch){
+			return;
+		}goalEdgeEpochs[edge] = epoch;
+		goalEdges[goalEdgeCount] = edge;
+		goalEdgeCount++;
+		goalNodeEpochs[startNode] = epoch;
+		if(endNode != -1){
+			goalNodeEpochs[endNode] = epoch;
+		}
+	}
+	
+	/**
+	 * Returns whether the edge reaches the destination of the current search
+	 * @param edge The edge id
+	 * @return True if the destination is on the road
+	 */
+	public boolean isGoalEdge(int edge){
+		return goalEdgeEpochs[edge] == epoch;
+	}
+	
+	/**
+	 * Returns whether one of the roads of the node reaches the destination of the current search
+	 * @param node The node id
+	 * @return True if the destination is on one of the node's roads
+	 */
+	public boolean isGoalNode(int node){
+		return goalNodeEpochs[node] == epoch;
+	}
+	
+	/**
+	 * Returns the number of edges that reach the destination of the current search
+	 * @return The number of goal edges
+	 */
+	public int getGoalEdgeCount(){
+		return goalEdgeCount;
+	}
+	
+	/**
+	 * Returns one of the edges that reach the destination of the current search
+	 * @param index The index of the goal edge, less than the goal edge count
+	 * @return The edge id
+	 */
+	public int getGoalEdge(int index){
+		return goalEdges[index];
+	}
+}
@@ -0,0 +1,167 @@
+package group26.planning;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.unimelb.swen30006.partc.core.infrastructure.TrafficLight;
+
+/**
+ * Predicts the phase of the traffic lights at each intersection from the light changes cars observe
+ * Each approach to an intersection, east west or north south, learns the time between the starts of its green
+ * phases and how long its green phase lasts, so the wait for a car arriving at a given time can be predicted
+ * Times are in seconds of the simulation time of the graph, built up from the time passed in each update, so every
+ * car shares the same clock however fast the simulation runs
+ * Observations that do not change the light state are lock free, so cars may report their light every update
+ * The learned phases are stored as the bits of each double in atomic arrays, so a prediction made on another thread
+ * always sees whole values written by an observation, never a torn or unpublished value
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class SignalPhaseModel {
+	//The approaches tracked at each intersection, east west and north south
+	private static final int APPROACHCOUNT = 2;
+	//The weight given to each new observation of a cycle or green phase
+	private static final double SMOOTHING = 0.3;
+	//Cycles outside this range are treated as measurement errors, in seconds
+	private static final double MINIMUMCYCLE = 2;
+	private static final double MAXIMUMCYCLE = 300;
+	//The state stored before any state has been observed
+	private static final int UNKNOWN = -1;
+	
+	//The latest observed state of each approach as the ordinal of the state
+	private final AtomicIntegerArray states;
+	//The time the latest observed green phase of each approach started, NaN until a green phase is seen starting
+	private final AtomicLongArray greenStarts;
+	//The average time between the starts of green phases of each approach, 0 until learned
+	private final AtomicLongArray cycleLengths;
+	//The average length of the green phase of each approach, 0 until learned
+	private final AtomicLongArray greenLengths;
+	
+	/**
+	 * Constructor for the signal phase model, nothing is predicted until light changes have been observed
+	 * @param nodeCount The number of intersections in the graph
+	 */
+	public SignalPhaseModel(int nodeCount){
+		this.states = new AtomicIntegerArray(nodeCount*APPROACHCOUNT);
+		for(int i=0;i<states.length();i++){
+			states.set(i, UNKNOWN);
+		}
+		this.greenStarts = new AtomicLongArray(nodeCount*APPROACHCOUNT);
+		for(int i=0;i<greenStarts.length();i++){
+			setDouble(greenStarts, i, Double.NaN);
+		}
+		this.cycleLengths = new AtomicLongArray(nodeCount*APPROACHCOUNT);
+		this.greenLengths = new AtomicLongArray(nodeCount*APPROACHCOUNT);
+	}
+	
+	/**
+	 * Returns the double stored at the given index of an atomic array
+	 * @param values The array holding the bits of each double
+	 * @param index The index of the value
+	 * @return The stored value
+	 */
+	private static double getDouble(AtomicLongArray values, int index){
+		return Double.longBitsToDouble(values.get(index));
+	}
+	
+	/**
+	 * Stores a double at the given index of an atomic array
+	 * @param values The array holding the bits of each double
+	 * @param index The index of the value
+	 * @param value The value to store
+	 */
+	private static void setDouble(AtomicLongArray values, int index, double value){
+		values.set(index, Double.doubleToRawLongBits(value));
+	}
+	
+	/**
+	 * Returns the approach used when travelling between two points
+	 * @param heading The heading of travel in degrees, a multiple of 90
+	 * @return 0 for the east west approach, 1 for the north south approach
+	 */
+	public static int approach(int heading){
+		return (heading/90)%APPROACHCOUNT;
+	}
+	
+	/**
+	 * Records the state of a light a car observes while approaching an intersection, may be called by many cars at once
+	 * @param node The node id of the intersection
+	 * @param approach The approach the car is travelling on
+	 * @param state The observed state of the light
+	 * @param time The simulation time of the observation
+	 */
+	public void observe(int node, int approach, TrafficLight.State state, double time){
+		int index = (node*APPROACHCOUNT)+approach;
+		int previousState = states.get(index);
+		boolean green = state == TrafficLight.State.Green;
+		double greenStart, cycleLength, greenLength;
+		double interval;
+		
+		if(previousState == state.ordinal()){
+			return;
+		}
+		synchronized(this){
+			if(!states.compareAndSet(index, previousState, state.ordinal()) || previousState == UNKNOWN){
+				//Another car recorded the change first, or this is the first state seen and not a change
+				return;
+			}
+			greenStart = getDouble(greenStarts, index);
+			cycleLength = getDouble(cycleLengths, index);
+			if(green && previousState != TrafficLight.State.Green.ordinal()){
+				//A green phase has started, the time since the last start is one or more whole cycles
+				if(!Double.isNaN(greenStart)){
+					interval = time - greenStart;
+					if(cycleLength > 0){
+						interval /= Math.max(1, Math.round(interval/cycleLength));
+					}if(interval >= MINIMUMCYCLE && interval <= MAXIMUMCYCLE){
+						setDouble(cycleLengths, index, cycleLength == 0 ? interval : cycleLength + (SMOOTHING*(interval - cycleLength)));
+					}
+				}setDouble(greenStarts, index, time);
+			}else if(!green && previousState == TrafficLight.State.Green.ordinal() && !Double.isNaN(greenStart)){
+				//A green phase has ended, only use it if the same green phase was seen starting
+				interval = time - greenStart;
+				greenLength = getDouble(greenLengths, index);
+				if(cycleLength == 0 || interval < cycleLength){
+					setDouble(greenLengths, index, greenLength == 0 ? interval : greenLength + (SMOOTHING*(interval - greenLength)));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Predicts how long a car arriving at an intersection at the given time waits for the light
+	 * Predictions read the learned phases without locking, a prediction made during an observation sees each value
+	 * either before or after the observation changed it
+	 * @param node The node id of the intersection
+	 * @param approach The approach the car arrives on
+	 * @param time The simulation time the car arrives
+	 * @return The expected wait in seconds, or -1 if the phase of the light has not been learned
+	 */
+	public double predictWait(int node, int approach, double time){
+		int index = (node*APPROACHCOUNT)+approach;
+		double cycleLength = getDouble(cycleLengths, index);
+		double greenLength = getDouble(greenLengths, index);
+		double phase;
+		
+		if(cycleLength == 0 || greenLength == 0){
+			return -1;
+		}
+		phase = (time - getDouble(greenStarts, index)) % cycleLength;
+		if(phase < 0){
+			phase += cycleLength;
+		}if(phase < greenLength){
+			return 0;
+		}return cycleLength - phase;
+	}
+	
+	/**
+	 * Returns whether the phase of the light on an approach has been learned
+	 * @param node The node id of the intersection
+	 * @param approach The approach to the intersection
+	 * @return True if waits can be predicted for the approach
+	 */
+	public boolean isLearned(int node, int approach){
+		int index = (node*APPROACHCOUNT)+approach;
+		return getDouble(cycleLengths, index) > 0 && getDouble(greenLengths, index) > 0;
+	}
+}
@@ -0,0 +1,98 @@
+package group26.planning;
+
+/**
+ * Plans the speed a car should travel at so that it slows down smoothly for traffic lights, turns, the destination
+ * and vehicles ahead instead of only ever accelerating or braking fully
+ * The target speed is the highest speed from which the car can still slow to each limit ahead, using part of the
+ * braking deceleration measured from the car itself so the rest is kept as a safety margin
+ * @author Group 26 - Stewart Collins 326206, Raja Ramkumar 725564, Thomas Nielsen 357491
+ *
+ */
+public class SpeedProfilePlanner {
+	//The fraction of the measured braking deceleration used when planning to slow down
+	private static final float BRAKINGMARGIN = 0.5f;
+	//The braking deceleration assumed until the car's braking has been measured, in speed per second
+	private static final float DEFAULTDECELERATION = 10;
+	//The weight given to each new measurement of the braking deceleration
+	private static final float SMOOTHING = 0.2f;
+	//The speed cars turn through intersections at
+	private static final float TURNSPEED = 10;
+	//How far before a red or amber traffic light the car aims to stop, within the distance the road rules stop at
+	private static final float STOPMARGIN = 8;
+	//Threats closer than this time to collision stop the car, the same margin the collision handler uses
+	private static final float COLLISIONTIME = 2;
+	//The difference between the speed and the target speed that gives full acceleration or full braking
+	private static final float SPEEDBAND = 4;
+	
+	//The measured deceleration of the car when braking
+	private float brakingDeceleration;
+	//The speed of the car at the previous update, negative before the first update
+	private float previousSpeed;
+	
+	/**
+	 * Constructor for the speed profile planner
+	 */
+	public SpeedProfilePlanner(){
+		this.brakingDeceleration = DEFAULTDECELERATION;
+		this.previousSpeed = -1;
+	}
+	
+	/**
+	 * Measures the braking deceleration of the car from the change in speed since the previous update
+	 * @param speed The current speed of the car
+	 * @param delta The time passed since the previous update
+	 * @param appliedInput The input applied to the car in the previous update, negative if it braked
+	 */
+	public void observe(float speed, float delta, int appliedInput){
+		float deceleration;
+		if(appliedInput < 0 && previousSpeed > speed && delta > 0){
+			deceleration = (previousSpeed - speed)/delta;
+			brakingDeceleration += SMOOTHING*(deceleration - brakingDeceleration);
+		}previousSpeed = speed;
+	}
+	
+	/**
+	 * Returns the highest speed the car can slow to the given speed from within the given distance
+	 * @param distance The distance available to slow down
+	 * @param finalSpeed The speed to be reached at the end of the distance
+	 * @return The highest speed
+	 */
+	private float approachSpeed(float distance, float finalSpeed){
+		return (float)Math.sqrt((finalSpeed*finalSpeed) + (2*BRAKINGMARGIN*brakingDeceleration*Math.max(0, distance)));
+	}
+	
+	/**
+	 * Calculates the speed the car should travel at given the limits ahead of it
+	 * @param speed The current speed of the car
+	 * @param turnDistance The distance to the next turn, infinite if there is no turn ahead
+	 * @param lightDistance The distance to a red or amber traffic light ahead, infinite if there is none
+	 * @param destinationDistance The distance to the destination, infinite if it is not on the current road
+	 * @param timeToCollision The shortest time to collision with a vehicle ahead, infinite if there is none
+	 * @return The target speed, infinite if nothing ahead limits the car
+	 */
+	public float targetSpeed(float speed, float turnDistance, float lightDistance, float destinationDistance, float timeToCollision){
+		float target = Float.POSITIVE_INFINITY;
+		if(!Float.isInfinite(turnDistance)){
+			target = Math.min(target, approachSpeed(turnDistance, TURNSPEED));
+		}if(!Float.isInfinite(lightDistance)){
+			target = Math.min(target, approachSpeed(lightDistance - STOPMARGIN, 0));
+		}if(!Float.isInfinite(destinationDistance)){
+			target = Math.min(target, approachSpeed(destinationDistance, 0));
+		}if(!Float.isInfinite(timeToCollision)){
+			//Ease off while the vehicle ahead is closing in, stopping completely at the collision handler's margin
+			target = Math.min(target, speed*Math.max(0, Math.min(1, (timeToCollision - COLLISIONTIME)/COLLISIONTIME)));
+		}return target;
+	}
+	
+	/**
+	 * Calculates the continuous acceleration input that moves the car towards the target speed
+	 * @param targetSpeed The speed the car should travel at
+	 * @param speed The current speed of the car
+	 * @return The input between -1 for full braking and 1 for full acceleration
+	 */
+	public float accelerationFor(float targetSpeed, float speed){
+		if(Float.isInfinite(targetSpeed)){
+			return 1;
+		}return Math.max(-1, Math.min(1, (targetSpeed - speed)/SPEEDBAND));
+	}
+}